@@ -0,0 +1,118 @@
+package com.ryanair.task.interconnected_flights.benchmark;
+
+import com.ryanair.task.interconnected_flights.dto.LegDTO;
+import com.ryanair.task.interconnected_flights.dto.MonthScheduleDTO;
+import com.ryanair.task.interconnected_flights.model.Timetable;
+import com.ryanair.task.interconnected_flights.service.ConnectionMatcher;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the sorted-merge {@link ConnectionMatcher} against the nested {@code Flux} join it replaced,
+ * for one day of a one-stop route with {@code flightsPerDay} departures on each leg, next to the direct-flight scan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConnectionMatchingBenchmark {
+
+    private static final YearMonth MONTH = YearMonth.of(2025, 3);
+    private static final LocalDateTime DEPARTURE = LocalDateTime.parse("2025-03-14T00:00");
+    private static final LocalDateTime ARRIVAL = LocalDateTime.parse("2025-03-14T23:59");
+
+    @Param({"8", "32", "128"})
+    private int flightsPerDay;
+
+    private MonthScheduleDTO firstLegSchedule;
+    private MonthScheduleDTO secondLegSchedule;
+    private Timetable firstLeg;
+    private Timetable secondLeg;
+    private ConnectionMatcher matcher;
+
+    @Setup
+    public void setUp() {
+        firstLegSchedule = Fixtures.schedule(MONTH, flightsPerDay, 60);
+        secondLegSchedule = Fixtures.schedule(MONTH, flightsPerDay, 150);
+        firstLeg = Timetable.of(MONTH, List.of(firstLegSchedule));
+        secondLeg = Timetable.of(MONTH, List.of(secondLegSchedule));
+        matcher = new ConnectionMatcher(Duration.ofHours(2), Duration.ofHours(24));
+    }
+
+    @Benchmark
+    public void sortedMerge(Blackhole blackhole) {
+        int earliestDeparture = Timetable.toEpochMinute(DEPARTURE) + 1;
+        int latestArrival = Timetable.toEpochMinute(ARRIVAL);
+        matcher.match(firstLeg, firstLeg.firstDepartureAtOrAfter(earliestDeparture), firstLeg.firstDepartureAtOrAfter(latestArrival + 1),
+                secondLeg, latestArrival,
+                (i, j) -> blackhole.consume(i + j));
+    }
+
+    @Benchmark
+    public void directScan(Blackhole blackhole) {
+        int latestArrival = Timetable.toEpochMinute(ARRIVAL);
+        for (int i = firstLeg.firstDepartureAtOrAfter(Timetable.toEpochMinute(DEPARTURE) + 1);
+             i < firstLeg.size() && firstLeg.departure(i) <= latestArrival;
+             i++) {
+            if (firstLeg.arrival(i) <= latestArrival) {
+                blackhole.consume(i);
+            }
+        }
+    }
+
+    @Benchmark
+    public long fluxJoin() {
+        return legacyConnectingFlight(Flux.just(firstLegSchedule), Flux.just(secondLegSchedule), DEPARTURE, ARRIVAL)
+                .count()
+                .block();
+    }
+
+    /**
+     * The pre-matcher implementation of {@code FlightService.processConnectingFlight}, kept verbatim as the baseline.
+     */
+    private static Flux<LegDTO> legacyConnectingFlight(Flux<MonthScheduleDTO> firstLeg, Flux<MonthScheduleDTO> secondLeg,
+                                                       LocalDateTime departureDate, LocalDateTime arrivalDate) {
+        return firstLeg
+                .flatMap(monthScheduleDTO -> Flux.fromIterable(monthScheduleDTO.days()))
+                .filter(day -> day.day() == departureDate.getDayOfMonth())
+                .flatMap(day -> Flux.fromIterable(day.flights()))
+                .filter(flight1 -> LocalTime.parse(flight1.departureTime()).isAfter(departureDate.toLocalTime()))
+                .flatMap(flight1 -> {
+                    LocalDateTime flight1DepartureDateTime = LocalDateTime.of(departureDate.toLocalDate(), LocalTime.parse(flight1.departureTime()));
+                    LocalDateTime flight1ArrivalDateTime = LocalDateTime.of(departureDate.toLocalDate(), LocalTime.parse(flight1.arrivalTime()));
+                    if (flight1ArrivalDateTime.isBefore(flight1DepartureDateTime)) {
+                        flight1ArrivalDateTime = flight1ArrivalDateTime.plusDays(1);
+                    }
+                    LocalDateTime finalFlight1ArrivalDateTime = flight1ArrivalDateTime;
+                    return secondLeg
+                            .flatMap(monthScheduleDTO -> Flux.fromIterable(monthScheduleDTO.days()))
+                            .filter(day -> day.day() == departureDate.getDayOfMonth())
+                            .flatMap(day -> Flux.fromIterable(day.flights()))
+                            .filter(flight2 -> LocalTime.parse(flight2.departureTime()).isAfter(LocalTime.parse(flight1.arrivalTime())))
+                            .map(flight2 -> {
+                                LocalDateTime flight2DepartureDateTime = LocalDateTime.of(departureDate.toLocalDate(), LocalTime.parse(flight2.departureTime()));
+                                LocalDateTime flight2ArrivalDateTime = LocalDateTime.of(departureDate.toLocalDate(), LocalTime.parse(flight2.arrivalTime()));
+                                if (flight2ArrivalDateTime.isBefore(flight2DepartureDateTime)) {
+                                    flight2ArrivalDateTime = flight2ArrivalDateTime.plusDays(1);
+                                }
+                                return new LegDTO("BBB", "CCC", flight2DepartureDateTime, flight2ArrivalDateTime);
+                            })
+                            .filter(leg -> !leg.arrivalDateTime().isAfter(arrivalDate))
+                            .filter(leg -> Duration.between(finalFlight1ArrivalDateTime.toLocalTime(), leg.departureDateTime().toLocalTime()).toHours() >= 2)
+                            .flatMap(leg -> Flux.just(
+                                    new LegDTO("AAA", "BBB", flight1DepartureDateTime, finalFlight1ArrivalDateTime),
+                                    leg
+                            ));
+                });
+    }
+}
@@ -0,0 +1,68 @@
+package com.ryanair.task.interconnected_flights.benchmark;
+
+import com.ryanair.task.interconnected_flights.config.FlightSearchProperties;
+import com.ryanair.task.interconnected_flights.dto.RouteDTO;
+import com.ryanair.task.interconnected_flights.dto.RouteWithNStopDTO;
+import com.ryanair.task.interconnected_flights.model.RouteGraph;
+import com.ryanair.task.interconnected_flights.model.Timetable;
+import com.ryanair.task.interconnected_flights.service.FlightService;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end {@link FlightService#findFlights} over a production-sized network with in-memory upstreams,
+ * cycling through origin/destination pairs that have both direct and connecting candidates, on either search engine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FindFlightsBenchmark {
+
+    private static final LocalDateTime DEPARTURE = LocalDateTime.parse("2025-03-14T00:00");
+    private static final LocalDateTime ARRIVAL = LocalDateTime.parse("2025-03-14T23:59");
+
+    @Param({"0", "1", "2"})
+    private int maxStops;
+
+    @Param({"8", "32"})
+    private int flightsPerDay;
+
+    @Param({"REACTIVE", "VIRTUAL_THREADS"})
+    private FlightSearchProperties.Engine engine;
+
+    private FlightService flightService;
+    private List<String[]> queries;
+    private int query;
+
+    @Setup
+    public void setUp() {
+        List<RouteDTO> routes = Fixtures.network();
+        flightService = StubUpstreams.flightService(routes, Timetable.of(Fixtures.MONTH, List.of(Fixtures.schedule(Fixtures.MONTH, flightsPerDay, 90))), engine);
+
+        RouteGraph graph = Fixtures.graph(routes);
+        queries = new ArrayList<>();
+        for (int i = 0; i < Fixtures.NETWORK_AIRPORTS && queries.size() < 64; i++) {
+            String origin = Fixtures.airport(i);
+            for (String destination : graph.destinationsFrom(origin)) {
+                if (graph.findRoutes(origin, destination, 1).size() > 1) {
+                    queries.add(new String[]{origin, destination});
+                    break;
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public List<RouteWithNStopDTO> findFlights() {
+        String[] pair = queries.get(query);
+        query = (query + 1) % queries.size();
+        return flightService.findFlights(pair[0], pair[1], DEPARTURE, ARRIVAL, maxStops).collectList().block();
+    }
+}
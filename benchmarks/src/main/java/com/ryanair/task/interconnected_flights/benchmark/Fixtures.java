@@ -0,0 +1,71 @@
+package com.ryanair.task.interconnected_flights.benchmark;
+
+import com.ryanair.task.interconnected_flights.dto.DayDTO;
+import com.ryanair.task.interconnected_flights.dto.FlightDTO;
+import com.ryanair.task.interconnected_flights.dto.MonthScheduleDTO;
+import com.ryanair.task.interconnected_flights.dto.RouteDTO;
+import com.ryanair.task.interconnected_flights.model.RouteGraph;
+
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic network: {@code airports} airports named AAA, AAB, ..., each served from
+ * {@code destinationsPerAirport} others, with {@code flightsPerDay} daily departures per route.
+ */
+final class Fixtures {
+
+    static final YearMonth MONTH = YearMonth.of(2025, 3);
+
+    /**
+     * Roughly the size of the production network: about 240 airports and 4000 routes.
+     */
+    static final int NETWORK_AIRPORTS = 240;
+    static final int NETWORK_DESTINATIONS_PER_AIRPORT = 17;
+
+    private Fixtures() {
+    }
+
+    static String airport(int index) {
+        return new String(new char[]{(char) ('A' + index / 676), (char) ('A' + index / 26 % 26), (char) ('A' + index % 26)});
+    }
+
+    static List<RouteDTO> routes(int airports, int destinationsPerAirport) {
+        Random random = new Random(42);
+        List<RouteDTO> routes = new ArrayList<>(airports * destinationsPerAirport);
+        for (int origin = 0; origin < airports; origin++) {
+            for (int i = 0; i < destinationsPerAirport; i++) {
+                int destination = (origin + 1 + random.nextInt(airports - 1)) % airports;
+                routes.add(new RouteDTO(airport(origin), airport(destination), null, false, false, "RYANAIR", "CITY"));
+            }
+        }
+        return routes;
+    }
+
+    static List<RouteDTO> network() {
+        return routes(NETWORK_AIRPORTS, NETWORK_DESTINATIONS_PER_AIRPORT);
+    }
+
+    static RouteGraph graph(List<RouteDTO> routes) {
+        RouteGraph.Builder graph = RouteGraph.builder();
+        routes.forEach(route -> graph.addRoute(route.airportFrom(), route.airportTo()));
+        return graph.build();
+    }
+
+    static MonthScheduleDTO schedule(YearMonth month, int flightsPerDay, int blockMinutes) {
+        int spacing = Math.max(1, (18 * 60) / flightsPerDay);
+        List<DayDTO> days = new ArrayList<>(month.lengthOfMonth());
+        for (int day = 1; day <= month.lengthOfMonth(); day++) {
+            List<FlightDTO> flights = new ArrayList<>(flightsPerDay);
+            for (int i = 0; i < flightsPerDay; i++) {
+                LocalTime departure = LocalTime.of(5, 0).plusMinutes((long) i * spacing);
+                flights.add(new FlightDTO(String.valueOf(1000 + i), departure.toString(), departure.plusMinutes(blockMinutes).toString()));
+            }
+            days.add(new DayDTO(day, flights));
+        }
+        return new MonthScheduleDTO(month.getMonthValue(), days);
+    }
+}
@@ -0,0 +1,83 @@
+package com.ryanair.task.interconnected_flights.benchmark;
+
+import com.ryanair.task.interconnected_flights.controller.ItineraryJsonEncoder;
+import com.ryanair.task.interconnected_flights.dto.LegDTO;
+import com.ryanair.task.interconnected_flights.dto.RouteWithNStopDTO;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Encoder;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing one {@code /interconnections} response of one-stop itineraries into pooled Netty buffers, with the default
+ * Jackson encoder against the pre-serializing {@link ItineraryJsonEncoder}. Run with {@code -prof gc}: the bytes
+ * allocated per response ({@code gc.alloc.rate.norm}) are the figure of interest.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ItineraryEncodeBenchmark {
+
+    private static final ResolvableType ITINERARY = ResolvableType.forClass(RouteWithNStopDTO.class);
+
+    @Param({"jackson", "pre-serialized"})
+    private String encoder;
+
+    @Param({"application/json", "application/x-ndjson"})
+    private String mediaType;
+
+    @Param({"20", "500"})
+    private int itineraries;
+
+    private final NettyDataBufferFactory bufferFactory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+    private Encoder<RouteWithNStopDTO> itineraryEncoder;
+    private MediaType contentType;
+    private List<RouteWithNStopDTO> response;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        itineraryEncoder = switch (encoder) {
+            case "jackson" -> (Encoder<RouteWithNStopDTO>) (Encoder<?>) new Jackson2JsonEncoder(Jackson2ObjectMapperBuilder.json().build());
+            case "pre-serialized" -> new ItineraryJsonEncoder();
+            default -> throw new IllegalArgumentException(encoder);
+        };
+        contentType = MediaType.parseMediaType(mediaType);
+        LocalDateTime start = Fixtures.MONTH.atDay(1).atTime(6, 0);
+        response = new ArrayList<>(itineraries);
+        for (int i = 0; i < itineraries; i++) {
+            LocalDateTime departure = start.plusMinutes(17L * i);
+            response.add(new RouteWithNStopDTO(1, List.of(
+                    new LegDTO(Fixtures.airport(0), Fixtures.airport(1 + i % 17), departure, departure.plusMinutes(95)),
+                    new LegDTO(Fixtures.airport(1 + i % 17), Fixtures.airport(18), departure.plusMinutes(215), departure.plusMinutes(340)))));
+        }
+    }
+
+    @Benchmark
+    public long encode() {
+        Long bytes = itineraryEncoder.encode(Flux.fromIterable(response), bufferFactory, ITINERARY, contentType, Map.of())
+                .map(buffer -> {
+                    int size = buffer.readableByteCount();
+                    DataBufferUtils.release(buffer);
+                    return (long) size;
+                })
+                .reduce(0L, Long::sum)
+                .block();
+        return bytes == null ? 0 : bytes;
+    }
+}
@@ -0,0 +1,47 @@
+package com.ryanair.task.interconnected_flights.benchmark;
+
+import com.ryanair.task.interconnected_flights.dto.RouteDTO;
+import com.ryanair.task.interconnected_flights.model.FlightRoute;
+import com.ryanair.task.interconnected_flights.model.RouteGraph;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Candidate route enumeration on a production-sized network, i.e. the work behind {@code FlightService.getFilteredRoutes}
+ * once the graph is resident, for every origin of the network against a fixed set of destinations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouteSearchBenchmark {
+
+    @Param({"0", "1", "2"})
+    private int maxStops;
+
+    private RouteGraph graph;
+    private List<RouteDTO> routes;
+    private int query;
+
+    @Setup
+    public void setUp() {
+        routes = Fixtures.network();
+        graph = Fixtures.graph(routes);
+    }
+
+    @Benchmark
+    public List<FlightRoute> findRoutes() {
+        int index = query;
+        query = (query + 1) % Fixtures.NETWORK_AIRPORTS;
+        return graph.findRoutes(Fixtures.airport(index), Fixtures.airport((index * 7 + 13) % Fixtures.NETWORK_AIRPORTS), maxStops);
+    }
+
+    @Benchmark
+    public RouteGraph buildGraph() {
+        return Fixtures.graph(routes);
+    }
+}
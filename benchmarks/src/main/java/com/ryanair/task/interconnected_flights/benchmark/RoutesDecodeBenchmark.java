@@ -0,0 +1,69 @@
+package com.ryanair.task.interconnected_flights.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ryanair.task.interconnected_flights.client.RouteStreamDecoder;
+import com.ryanair.task.interconnected_flights.dto.RouteDTO;
+import com.ryanair.task.interconnected_flights.model.DirectRoute;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding the full /routes payload into the direct Ryanair routes: Jackson databind into {@link RouteDTO} records
+ * followed by filtering, against the incremental {@link RouteStreamDecoder} fed in network-sized chunks.
+ * A quarter of the routes are connecting or operated by another airline, as in the real payload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoutesDecodeBenchmark {
+
+    @Param({"8192"})
+    private int chunkSize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<RouteDTO> routes = new ArrayList<>();
+        List<RouteDTO> network = Fixtures.network();
+        for (int i = 0; i < network.size(); i++) {
+            RouteDTO route = network.get(i);
+            routes.add(switch (i % 8) {
+                case 0 -> new RouteDTO(route.airportFrom(), route.airportTo(), Fixtures.airport(i % Fixtures.NETWORK_AIRPORTS), false, false, "RYANAIR", "CITY");
+                case 1 -> new RouteDTO(route.airportFrom(), route.airportTo(), null, true, true, "AIR_PARTNER", "LEISURE");
+                default -> route;
+            });
+        }
+        payload = objectMapper.writeValueAsBytes(routes);
+    }
+
+    @Benchmark
+    public List<DirectRoute> databind() throws IOException {
+        List<DirectRoute> routes = new ArrayList<>();
+        for (RouteDTO route : objectMapper.readValue(payload, RouteDTO[].class)) {
+            if (route.connectingAirport() == null && "RYANAIR".equals(route.operator())) {
+                routes.add(new DirectRoute(route.airportFrom(), route.airportTo()));
+            }
+        }
+        return routes;
+    }
+
+    @Benchmark
+    public List<DirectRoute> streaming() {
+        RouteStreamDecoder decoder = new RouteStreamDecoder();
+        List<DirectRoute> routes = new ArrayList<>();
+        for (int offset = 0; offset < payload.length; offset += chunkSize) {
+            routes.addAll(decoder.feed(payload, offset, Math.min(chunkSize, payload.length - offset)));
+        }
+        routes.addAll(decoder.endOfInput());
+        return routes;
+    }
+}
@@ -0,0 +1,44 @@
+package com.ryanair.task.interconnected_flights.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ryanair.task.interconnected_flights.dto.MonthScheduleDTO;
+import com.ryanair.task.interconnected_flights.model.Timetable;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning one month of a route's timetable API payload into the resident {@link Timetable}:
+ * the Jackson decode into {@link MonthScheduleDTO} alone, and followed by the timetable decode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScheduleDecodeBenchmark {
+
+    @Param({"4", "16", "64"})
+    private int flightsPerDay;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        payload = objectMapper.writeValueAsBytes(Fixtures.schedule(Fixtures.MONTH, flightsPerDay, 120));
+    }
+
+    @Benchmark
+    public MonthScheduleDTO jsonDecode() throws IOException {
+        return objectMapper.readValue(payload, MonthScheduleDTO.class);
+    }
+
+    @Benchmark
+    public Timetable jsonToTimetable() throws IOException {
+        return Timetable.of(Fixtures.MONTH, List.of(objectMapper.readValue(payload, MonthScheduleDTO.class)));
+    }
+}
@@ -0,0 +1,93 @@
+package com.ryanair.task.interconnected_flights.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ryanair.task.interconnected_flights.dto.MonthScheduleDTO;
+import com.ryanair.task.interconnected_flights.dto.RouteDTO;
+import com.ryanair.task.interconnected_flights.model.CachedTimetable;
+import com.ryanair.task.interconnected_flights.model.RouteGraph;
+import com.ryanair.task.interconnected_flights.model.ScheduleKey;
+import com.ryanair.task.interconnected_flights.model.Timetable;
+import com.ryanair.task.interconnected_flights.model.TimetableSnapshot;
+import com.ryanair.task.interconnected_flights.service.TimetableSnapshotStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to get the resident data ready after a restart: decoding the upstream JSON payloads from scratch
+ * (what a cold boot does, minus the network) versus reading the memory-mapped snapshot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class SnapshotStartupBenchmark {
+
+    @Param({"2000"})
+    private int scheduledRoutes;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private byte[] routesPayload;
+    private List<ScheduleKey> scheduleKeys;
+    private List<byte[]> schedulePayloads;
+    private Path snapshot;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        List<RouteDTO> routes = Fixtures.routes(250, 40);
+        routesPayload = objectMapper.writeValueAsBytes(routes);
+
+        scheduleKeys = new ArrayList<>(scheduledRoutes);
+        schedulePayloads = new ArrayList<>(scheduledRoutes);
+        Map<ScheduleKey, CachedTimetable> schedules = new HashMap<>();
+        for (int i = 0; i < scheduledRoutes; i++) {
+            RouteDTO route = routes.get(i % routes.size());
+            ScheduleKey key = new ScheduleKey(route.airportFrom(), route.airportTo(), Fixtures.MONTH.getYear(), Fixtures.MONTH.getMonthValue());
+            MonthScheduleDTO schedule = Fixtures.schedule(Fixtures.MONTH, 4, 120);
+            scheduleKeys.add(key);
+            schedulePayloads.add(objectMapper.writeValueAsBytes(schedule));
+            schedules.put(key, new CachedTimetable(Timetable.of(Fixtures.MONTH, List.of(schedule)), Instant.now()));
+        }
+
+        snapshot = Files.createTempDirectory("snapshot-benchmark").resolve("timetable.snapshot");
+        TimetableSnapshotStore.write(snapshot, new TimetableSnapshot(Instant.now(), Fixtures.graph(routes), schedules));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(snapshot);
+    }
+
+    @Benchmark
+    public Map<ScheduleKey, CachedTimetable> coldDecode() throws IOException {
+        RouteGraph.Builder graph = RouteGraph.builder();
+        for (RouteDTO route : objectMapper.readValue(routesPayload, RouteDTO[].class)) {
+            if (route.connectingAirport() == null && "RYANAIR".equals(route.operator())) {
+                graph.addRoute(route.airportFrom(), route.airportTo());
+            }
+        }
+        graph.build();
+
+        Map<ScheduleKey, CachedTimetable> schedules = new HashMap<>();
+        for (int i = 0; i < scheduleKeys.size(); i++) {
+            MonthScheduleDTO schedule = objectMapper.readValue(schedulePayloads.get(i), MonthScheduleDTO.class);
+            schedules.put(scheduleKeys.get(i), new CachedTimetable(Timetable.of(Fixtures.MONTH, List.of(schedule)), Instant.now()));
+        }
+        return schedules;
+    }
+
+    @Benchmark
+    public TimetableSnapshot snapshotRestore() throws IOException {
+        return TimetableSnapshotStore.read(snapshot);
+    }
+}
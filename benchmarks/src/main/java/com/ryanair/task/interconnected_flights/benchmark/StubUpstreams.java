@@ -0,0 +1,71 @@
+package com.ryanair.task.interconnected_flights.benchmark;
+
+import com.ryanair.task.interconnected_flights.client.RoutesClient;
+import com.ryanair.task.interconnected_flights.client.SchedulesClient;
+import com.ryanair.task.interconnected_flights.config.FlightSearchProperties;
+import com.ryanair.task.interconnected_flights.config.ResilienceProperties;
+import com.ryanair.task.interconnected_flights.config.UpstreamProperties;
+import com.ryanair.task.interconnected_flights.dto.RouteDTO;
+import com.ryanair.task.interconnected_flights.model.DirectRoute;
+import com.ryanair.task.interconnected_flights.model.Timetable;
+import com.ryanair.task.interconnected_flights.service.FlightService;
+import com.ryanair.task.interconnected_flights.service.PrecomputedItineraryStore;
+import com.ryanair.task.interconnected_flights.service.RouteGraphService;
+import com.ryanair.task.interconnected_flights.service.SearchResultCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Wires a {@link FlightService} as the application does, but against in-memory upstreams: the routes client
+ * replays a fixed network and the schedules client answers every route with the same decoded timetable.
+ * Observations and the result cache are disabled so the numbers reflect the search itself.
+ */
+final class StubUpstreams {
+
+    private StubUpstreams() {
+    }
+
+    static FlightService flightService(List<RouteDTO> routes, Timetable timetable) {
+        return flightService(routes, timetable, FlightSearchProperties.Engine.REACTIVE);
+    }
+
+    static FlightService flightService(List<RouteDTO> routes, Timetable timetable, FlightSearchProperties.Engine engine) {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        Binder defaults = new Binder(new MapConfigurationPropertySource(Map.of("flights.engine", engine.name())));
+        UpstreamProperties upstream = defaults.bindOrCreate("upstream", UpstreamProperties.class);
+        ResilienceProperties resilience = defaults.bindOrCreate("resilience", ResilienceProperties.class);
+        FlightSearchProperties search = defaults.bindOrCreate("flights", FlightSearchProperties.class);
+
+        RoutesClient routesClient = new RoutesClient(WebClient.builder(), upstream, resilience, meterRegistry, ObservationRegistry.NOOP) {
+            @Override
+            public Flux<DirectRoute> getRoutes() {
+                return Flux.fromIterable(routes).map(route -> new DirectRoute(route.airportFrom(), route.airportTo()));
+            }
+        };
+        SchedulesClient schedulesClient = new SchedulesClient(WebClient.builder(), upstream, resilience, meterRegistry, ObservationRegistry.NOOP,
+                1, Duration.ofDays(1), Duration.ofDays(1)) {
+            @Override
+            public Mono<Timetable> getSchedule(String departure, String arrival, int year, int month) {
+                return Mono.just(timetable);
+            }
+        };
+
+        RouteGraphService routeGraphService = new RouteGraphService(routesClient, meterRegistry);
+        routeGraphService.getGraph().block();
+        // the result cache is off so every invocation runs the search
+        SearchResultCache resultCache = new SearchResultCache(schedulesClient, meterRegistry, false, DataSize.ofMegabytes(1), Duration.ofMinutes(1));
+        return new FlightService(routeGraphService, schedulesClient, search, new PrecomputedItineraryStore(), resultCache,
+                meterRegistry, ObservationRegistry.NOOP);
+    }
+}
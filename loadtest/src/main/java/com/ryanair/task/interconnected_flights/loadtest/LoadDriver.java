@@ -0,0 +1,161 @@
+package com.ryanair.task.interconnected_flights.loadtest;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop load generator for {@code /interconnections}: {@code concurrency} virtual users each send their next
+ * query as soon as the previous response body has been fully read, for the given duration.
+ * <p>
+ * The query mix follows what the service sees in practice: mostly pairs with direct or one-stop connections,
+ * some unreachable pairs answered with {@code 404}, a few two-stop searches and a share of streaming clients.
+ */
+final class LoadDriver {
+
+    private final String targetUrl;
+    private final SyntheticNetwork network;
+    private final YearMonth month;
+    private final Random random = new Random(7);
+
+    LoadDriver(String targetUrl, SyntheticNetwork network, YearMonth month) {
+        this.targetUrl = targetUrl;
+        this.network = network;
+        this.month = month;
+    }
+
+    Report run(int concurrency, Duration duration) {
+        // one connection per virtual user, so the driver's own pool never queues requests
+        ConnectionProvider connections = ConnectionProvider.builder("loadtest").maxConnections(concurrency).build();
+        WebClient webClient = WebClient.builder()
+                .baseUrl(this.targetUrl)
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections)))
+                .build();
+        Latencies latencies = new Latencies();
+        Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+
+        Flux.range(0, concurrency)
+                .flatMap(user -> Mono.defer(() -> this.send(webClient, this.nextQuery(), latencies, statuses))
+                        .repeat(() -> System.nanoTime() < deadline), concurrency)
+                .blockLast();
+        connections.dispose();
+
+        SortedMap<Integer, Long> statusCounts = new TreeMap<>();
+        statuses.forEach((status, count) -> statusCounts.put(status, count.sum()));
+        return new Report(Duration.ofNanos(System.nanoTime() - start), latencies.sorted(), statusCounts);
+    }
+
+    private Mono<Integer> send(WebClient webClient, Query query, Latencies latencies, Map<Integer, LongAdder> statuses) {
+        long sent = System.nanoTime();
+        return webClient.get()
+                .uri(uri -> {
+                    uri.path("/interconnections")
+                            .queryParam("departure", query.departure())
+                            .queryParam("arrival", query.arrival())
+                            .queryParam("departureDateTime", query.departureDateTime())
+                            .queryParam("arrivalDateTime", query.arrivalDateTime());
+                    if (query.maxStops() != null) {
+                        uri.queryParam("maxStops", query.maxStops());
+                    }
+                    return uri.build();
+                })
+                .accept(query.streaming() ? MediaType.APPLICATION_NDJSON : MediaType.APPLICATION_JSON)
+                .exchangeToMono(response -> response.bodyToFlux(DataBuffer.class)
+                        .doOnNext(DataBufferUtils::release)
+                        .then(Mono.just(response.statusCode().value())))
+                .onErrorResume(error -> Mono.just(-1))
+                .doOnNext(status -> {
+                    latencies.record(System.nanoTime() - sent);
+                    statuses.computeIfAbsent(status, code -> new LongAdder()).increment();
+                });
+    }
+
+    private Query nextQuery() {
+        synchronized (this.random) {
+            String departure = SyntheticNetwork.airport(this.random.nextInt(this.network.airports()));
+            String arrival;
+            int mix = this.random.nextInt(100);
+            if (mix < 80) {
+                // reachable: a direct destination, or one hop further
+                List<String> destinations = new ArrayList<>(this.network.destinationsFrom(departure));
+                arrival = destinations.get(this.random.nextInt(destinations.size()));
+                if (mix >= 40) {
+                    List<String> further = new ArrayList<>(this.network.destinationsFrom(arrival));
+                    further.remove(departure);
+                    if (!further.isEmpty()) {
+                        arrival = further.get(this.random.nextInt(further.size()));
+                    }
+                }
+            } else {
+                arrival = SyntheticNetwork.airport(this.random.nextInt(this.network.airports()));
+            }
+
+            LocalDateTime from = this.month.atDay(1 + this.random.nextInt(this.month.lengthOfMonth())).atTime(this.random.nextInt(12), 0);
+            LocalDateTime to = from.plusHours(new int[]{6, 12, 24, 48}[this.random.nextInt(4)]);
+            Integer maxStops = this.random.nextInt(100) < 10 ? Integer.valueOf(2) : null;
+            return new Query(departure, arrival, from, to, maxStops, this.random.nextInt(100) < 20);
+        }
+    }
+
+    private record Query(String departure, String arrival, LocalDateTime departureDateTime, LocalDateTime arrivalDateTime,
+                         Integer maxStops, boolean streaming) {
+    }
+
+    private static final class Latencies {
+
+        private long[] nanos = new long[1 << 16];
+        private int size;
+
+        synchronized void record(long latency) {
+            if (size == nanos.length) {
+                nanos = Arrays.copyOf(nanos, size * 2);
+            }
+            nanos[size++] = latency;
+        }
+
+        synchronized long[] sorted() {
+            long[] sorted = Arrays.copyOf(nanos, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+
+    /**
+     * Outcome of one run; {@code latencies} are the sorted response times in nanoseconds.
+     */
+    record Report(Duration elapsed, long[] latencies, SortedMap<Integer, Long> statuses) {
+
+        double throughput() {
+            return latencies.length / (elapsed.toNanos() / 1e9);
+        }
+
+        double percentileMillis(double percentile) {
+            if (latencies.length == 0) {
+                return Double.NaN;
+            }
+            int index = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+            return latencies[Math.max(0, index)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.ryanair.task.interconnected_flights.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ryanair.task.interconnected_flights.InterconnectedFlightsApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Entry point of the load-test harness. Arguments are {@code --name=value} pairs; the first bare argument picks the mode:
+ * <ul>
+ *     <li>{@code run} (default): starts the stub upstream and the service in-process, warms up, drives load and reports</li>
+ *     <li>{@code stub}: only serves the stub upstream, for a service started separately</li>
+ *     <li>{@code drive}: only drives load against {@code --target}, reading upstream counts from {@code --stub} if given</li>
+ * </ul>
+ */
+public final class LoadTestHarness {
+
+    private LoadTestHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String mode = "run";
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            } else {
+                mode = arg;
+            }
+        }
+
+        SyntheticNetwork network = new SyntheticNetwork(
+                intOption(options, "airports", 240),
+                intOption(options, "destinations-per-airport", 17),
+                intOption(options, "flights-per-day", 8));
+        YearMonth month = YearMonth.parse(options.getOrDefault("month", YearMonth.now().plusMonths(1).toString()));
+        int concurrency = intOption(options, "concurrency", 64);
+        Duration warmup = Duration.parse(options.getOrDefault("warmup", "PT10S"));
+        Duration duration = Duration.parse(options.getOrDefault("duration", "PT60S"));
+
+        switch (mode) {
+            case "stub" -> {
+                StubUpstreamServer stub = startStub(network, options, intOption(options, "port", 8089));
+                System.out.printf("Stub upstream listening, start the service with%n"
+                                + "  --upstream.routes.base-url=%s%s --upstream.schedules.base-url=%s%s%n",
+                        stub.baseUrl(), StubUpstreamServer.ROUTES_PATH, stub.baseUrl(), StubUpstreamServer.SCHEDULES_PATH);
+                Thread.currentThread().join();
+            }
+            case "drive" -> {
+                String target = options.getOrDefault("target", "http://localhost:8080");
+                String statsUrl = options.get("stub");
+                LoadDriver driver = new LoadDriver(target, network, month);
+                driver.run(concurrency, warmup);
+                StubUpstreamServer.Stats before = statsUrl == null ? null : remoteStats(statsUrl);
+                LoadDriver.Report report = driver.run(concurrency, duration);
+                StubUpstreamServer.Stats upstream = statsUrl == null ? null : remoteStats(statsUrl).minus(before);
+                print(report, upstream);
+            }
+            case "run" -> {
+                try (StubUpstreamServer stub = startStub(network, options, 0);
+                     ConfigurableApplicationContext service = startService(stub, options.getOrDefault("engine", "reactive"))) {
+                    LoadDriver driver = new LoadDriver("http://localhost:" + service.getEnvironment().getProperty("local.server.port"), network, month);
+                    driver.run(concurrency, warmup);
+                    StubUpstreamServer.Stats before = stub.stats();
+                    LoadDriver.Report report = driver.run(concurrency, duration);
+                    print(report, stub.stats().minus(before));
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown mode " + mode + ", expected run, stub or drive");
+        }
+    }
+
+    private static StubUpstreamServer startStub(SyntheticNetwork network, Map<String, String> options, int port) {
+        return new StubUpstreamServer(network,
+                Duration.parse(options.getOrDefault("latency", "PT0.05S")),
+                Duration.parse(options.getOrDefault("latency-jitter", "PT0.05S")),
+                Double.parseDouble(options.getOrDefault("error-rate", "0.0")))
+                .start(port);
+    }
+
+    private static ConfigurableApplicationContext startService(StubUpstreamServer stub, String engine) {
+        return new SpringApplicationBuilder(InterconnectedFlightsApplication.class)
+                .properties(
+                        "server.port=0",
+                        "snapshot.enabled=false",
+                        "flights.engine=" + engine,
+                        "upstream.routes.base-url=" + stub.baseUrl() + StubUpstreamServer.ROUTES_PATH,
+                        "upstream.schedules.base-url=" + stub.baseUrl() + StubUpstreamServer.SCHEDULES_PATH)
+                .run();
+    }
+
+    private static StubUpstreamServer.Stats remoteStats(String stubUrl) throws IOException {
+        return new ObjectMapper().readValue(URI.create(stubUrl + "/stats").toURL(), StubUpstreamServer.Stats.class);
+    }
+
+    private static void print(LoadDriver.Report report, StubUpstreamServer.Stats upstream) {
+        System.out.printf("Requests:   %d in %.1f s (%.1f req/s)%n", report.latencies().length, report.elapsed().toMillis() / 1000.0, report.throughput());
+        System.out.printf("Latency ms: p50 %.2f  p99 %.2f  p99.9 %.2f  max %.2f%n",
+                report.percentileMillis(50), report.percentileMillis(99), report.percentileMillis(99.9), report.percentileMillis(100));
+        System.out.printf("Statuses:   %s (-1 = transport error)%n", report.statuses());
+        if (upstream != null) {
+            System.out.printf("Upstream:   %d routes calls, %d schedules calls, %d injected errors%n",
+                    upstream.routeCalls(), upstream.scheduleCalls(), upstream.errors());
+        }
+    }
+
+    private static int intOption(Map<String, String> options, String name, int defaultValue) {
+        return options.containsKey(name) ? Integer.parseInt(options.get(name)) : defaultValue;
+    }
+}
@@ -0,0 +1,126 @@
+package com.ryanair.task.interconnected_flights.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Local stand-in for the Ryanair routes and timetable APIs, serving a {@link SyntheticNetwork} under the same paths.
+ * Every response is delayed by {@code latency} plus up to {@code latencyJitter}, and a share {@code errorRate} of
+ * calls answers {@code 503}; {@code /stats} reports how many calls each API received.
+ */
+final class StubUpstreamServer implements AutoCloseable {
+
+    static final String ROUTES_PATH = "/views/locate/3";
+    static final String SCHEDULES_PATH = "/timtbl/3/schedules";
+
+    private final SyntheticNetwork network;
+    private final Duration latency;
+    private final Duration latencyJitter;
+    private final double errorRate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, byte[]> schedulePayloads = new ConcurrentHashMap<>();
+    private final AtomicLong routeCalls = new AtomicLong();
+    private final AtomicLong scheduleCalls = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final byte[] routesPayload;
+    private DisposableServer server;
+
+    StubUpstreamServer(SyntheticNetwork network, Duration latency, Duration latencyJitter, double errorRate) {
+        this.network = network;
+        this.latency = latency;
+        this.latencyJitter = latencyJitter;
+        this.errorRate = errorRate;
+        this.routesPayload = this.json(network.routes());
+    }
+
+    StubUpstreamServer start(int port) {
+        this.server = HttpServer.create()
+                .port(port)
+                .compress(true)
+                .route(routes -> routes
+                        .get(ROUTES_PATH + "/routes", (request, response) -> {
+                            this.routeCalls.incrementAndGet();
+                            return this.respond(response, () -> this.routesPayload);
+                        })
+                        .get(SCHEDULES_PATH + "/{from}/{to}/years/{year}/months/{month}", (request, response) -> {
+                            this.scheduleCalls.incrementAndGet();
+                            return this.schedule(request, response);
+                        })
+                        .get("/stats", (request, response) -> response.header("Content-Type", "application/json")
+                                .sendByteArray(Mono.fromSupplier(() -> this.json(this.stats())))))
+                .bindNow();
+        return this;
+    }
+
+    String baseUrl() {
+        return "http://localhost:" + this.server.port();
+    }
+
+    Stats stats() {
+        return new Stats(this.routeCalls.get(), this.scheduleCalls.get(), this.errors.get());
+    }
+
+    @Override
+    public void close() {
+        if (this.server != null) {
+            this.server.disposeNow();
+        }
+    }
+
+    private Mono<Void> schedule(HttpServerRequest request, HttpServerResponse response) {
+        String from = request.param("from");
+        String to = request.param("to");
+        if (!this.network.hasRoute(from, to)) {
+            return this.delayed(response.status(HttpResponseStatus.NOT_FOUND).send());
+        }
+        YearMonth month = YearMonth.of(Integer.parseInt(request.param("year")), Integer.parseInt(request.param("month")));
+        return this.respond(response, () -> this.schedulePayloads.computeIfAbsent(from + to + month,
+                key -> this.json(this.network.schedule(from, to, month))));
+    }
+
+    private Mono<Void> respond(HttpServerResponse response, Supplier<byte[]> payload) {
+        if (ThreadLocalRandom.current().nextDouble() < this.errorRate) {
+            this.errors.incrementAndGet();
+            return this.delayed(response.status(HttpResponseStatus.SERVICE_UNAVAILABLE).send());
+        }
+        return this.delayed(response.header("Content-Type", "application/json")
+                .sendByteArray(Mono.fromSupplier(payload))
+                .then());
+    }
+
+    private Mono<Void> delayed(Mono<Void> send) {
+        long jitter = this.latencyJitter.isZero() ? 0 : ThreadLocalRandom.current().nextLong(this.latencyJitter.toMillis() + 1);
+        Duration delay = this.latency.plusMillis(jitter);
+        return delay.isZero() ? send : Mono.delay(delay).then(send);
+    }
+
+    private byte[] json(Object value) {
+        try {
+            return this.objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    record Stats(long routeCalls, long scheduleCalls, long errors) {
+
+        Stats minus(Stats earlier) {
+            return new Stats(routeCalls - earlier.routeCalls, scheduleCalls - earlier.scheduleCalls, errors - earlier.errors);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.ryanair.task.interconnected_flights.loadtest;
+
+import com.ryanair.task.interconnected_flights.dto.DayDTO;
+import com.ryanair.task.interconnected_flights.dto.FlightDTO;
+import com.ryanair.task.interconnected_flights.dto.MonthScheduleDTO;
+import com.ryanair.task.interconnected_flights.dto.RouteDTO;
+
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Deterministic synthetic network: {@code airports} airports named AAA, AAB, ..., each served from
+ * {@code destinationsPerAirport} others. Every route operates {@code flightsPerDay} daily departures whose
+ * times and block lengths vary per route, so connections do not all line up identically.
+ */
+final class SyntheticNetwork {
+
+    private final int airports;
+    private final int flightsPerDay;
+    private final Map<String, Set<String>> destinationsByOrigin = new HashMap<>();
+    private final List<RouteDTO> routes = new ArrayList<>();
+
+    SyntheticNetwork(int airports, int destinationsPerAirport, int flightsPerDay) {
+        this.airports = airports;
+        this.flightsPerDay = flightsPerDay;
+        Random random = new Random(42);
+        for (int origin = 0; origin < airports; origin++) {
+            Set<String> destinations = this.destinationsByOrigin.computeIfAbsent(airport(origin), airport -> new LinkedHashSet<>());
+            for (int i = 0; i < destinationsPerAirport; i++) {
+                String destination = airport((origin + 1 + random.nextInt(airports - 1)) % airports);
+                if (destinations.add(destination)) {
+                    this.routes.add(new RouteDTO(airport(origin), destination, null, false, false, "RYANAIR", "CITY"));
+                }
+            }
+        }
+    }
+
+    static String airport(int index) {
+        return new String(new char[]{(char) ('A' + index / 676), (char) ('A' + index / 26 % 26), (char) ('A' + index % 26)});
+    }
+
+    int airports() {
+        return airports;
+    }
+
+    List<RouteDTO> routes() {
+        return routes;
+    }
+
+    Set<String> destinationsFrom(String origin) {
+        return destinationsByOrigin.getOrDefault(origin, Set.of());
+    }
+
+    boolean hasRoute(String origin, String destination) {
+        return destinationsFrom(origin).contains(destination);
+    }
+
+    MonthScheduleDTO schedule(String origin, String destination, YearMonth month) {
+        int seed = Math.floorMod((origin + destination).hashCode(), 60);
+        int blockMinutes = 60 + seed * 2;
+        int spacing = Math.max(1, (18 * 60) / flightsPerDay);
+        List<DayDTO> days = new ArrayList<>(month.lengthOfMonth());
+        for (int day = 1; day <= month.lengthOfMonth(); day++) {
+            List<FlightDTO> flights = new ArrayList<>(flightsPerDay);
+            for (int i = 0; i < flightsPerDay; i++) {
+                LocalTime departure = LocalTime.of(5, 0).plusMinutes(seed + (long) i * spacing);
+                flights.add(new FlightDTO(String.valueOf(1000 + i), departure.toString(), departure.plusMinutes(blockMinutes).toString()));
+            }
+            days.add(new DayDTO(day, flights));
+        }
+        return new MonthScheduleDTO(month.getMonthValue(), days);
+    }
+}
@@ -0,0 +1,442 @@
+package com.ryanair.task.interconnected_flights.client;
+
+import com.ryanair.task.interconnected_flights.exception.UpstreamSaturatedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Admission control for one upstream. Every call waits for a concurrency permit and a token of a rate limit, and
+ * queued calls are admitted by {@link Priority}, with a minimum share for batch work, and round-robin between the
+ * requests that issued them, so one large search cannot starve the others. The rate adapts to the upstream: it halves on {@code 429}/{@code 503} answers,
+ * shrinks when calls take longer than the latency target, at most once per target interval, and otherwise grows
+ * additively back towards its maximum. Beyond {@code maxQueued} waiting calls, new ones fail fast with
+ * {@link UpstreamSaturatedException}.
+ * <p>
+ * Priority and request are read from the subscriber context, see {@link #withPriority} and {@link #request};
+ * calls without them are interactive and share one request.
+ */
+public final class FetchScheduler implements MeterBinder {
+
+    public enum Priority {
+        /** searches a user is waiting for */
+        INTERACTIVE,
+        /** batch queries, precomputation and background refreshes */
+        BATCH
+    }
+
+    private static final String PRIORITY = FetchScheduler.class.getName() + ".priority";
+    private static final String REQUEST = FetchScheduler.class.getName() + ".request";
+    private static final Object SHARED_REQUEST = new Object();
+
+    private static final double THROTTLED_DECREASE = 0.5;
+    private static final double SLOW_DECREASE = 0.8;
+    private static final int BATCH_SHARE = 5;
+
+    private final String name;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final double maxRate;
+    private final double minRate;
+    private final long latencyTargetNanos;
+    private final Map<Priority, LinkedHashMap<Object, ArrayDeque<Waiter>>> queues = new EnumMap<>(Priority.class);
+    private final Map<Object, Waiter> queuedByKey = new HashMap<>();
+    private final Map<Priority, Timer> waitTimers = new EnumMap<>(Priority.class);
+    private Counter throttled;
+    private Counter slow;
+    private int inFlight;
+    private int queued;
+    private double rate;
+    private double tokens;
+    private long refilledAt;
+    private long decreasedAt;
+    private boolean drainScheduled;
+    private int interactiveStreak;
+
+    public FetchScheduler(String name, int maxConcurrent, int maxQueued, double maxRate, double minRate, Duration latencyTarget) {
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.maxRate = maxRate;
+        this.minRate = Math.min(minRate, maxRate);
+        this.latencyTargetNanos = latencyTarget.toNanos();
+        this.rate = maxRate;
+        this.tokens = maxRate;
+        this.refilledAt = System.nanoTime();
+        this.decreasedAt = this.refilledAt - this.latencyTargetNanos;
+        for (Priority priority : Priority.values()) {
+            this.queues.put(priority, new LinkedHashMap<>());
+        }
+    }
+
+    /**
+     * Context entry running the upstream calls of the subscribed pipeline at {@code priority}.
+     */
+    public static ContextView withPriority(Priority priority) {
+        return Context.of(PRIORITY, priority);
+    }
+
+    /**
+     * Groups the upstream calls of each subscription into one request for fair queueing, unless the subscriber
+     * already belongs to one.
+     */
+    public static Function<Context, Context> request() {
+        return context -> context.hasKey(REQUEST) ? context : context.put(REQUEST, new Object());
+    }
+
+    /**
+     * The scheduling entries of {@code context} alone, to carry them into a call subscribed elsewhere.
+     */
+    public static ContextView scheduling(ContextView context) {
+        return Context.of(PRIORITY, priority(context), REQUEST, request(context));
+    }
+
+    public <T> Mono<T> schedule(Mono<T> call) {
+        return this.schedule(null, call);
+    }
+
+    /**
+     * Runs {@code call} once admitted. While a call for the same {@code key} is queued, it is not duplicated by
+     * callers sharing its result, but those callers can raise its priority through {@link #promote}.
+     */
+    public <T> Mono<T> schedule(Object key, Mono<T> call) {
+        return Mono.deferContextual(context -> Mono.usingWhen(this.acquire(key, priority(context), request(context)),
+                permit -> call, Permit::succeeded, Permit::failed, Permit::cancelled));
+    }
+
+    public <T> Flux<T> schedule(Flux<T> call) {
+        return Flux.deferContextual(context -> Flux.usingWhen(this.acquire(null, priority(context), request(context)),
+                permit -> call, Permit::succeeded, Permit::failed, Permit::cancelled));
+    }
+
+    /**
+     * Moves the queued call for {@code key}, if any, up to the priority and request of {@code context}.
+     */
+    public void promote(Object key, ContextView context) {
+        Priority priority = priority(context);
+        synchronized (this) {
+            Waiter waiter = this.queuedByKey.get(key);
+            if (waiter == null || waiter.priority.compareTo(priority) <= 0) {
+                return;
+            }
+            this.dequeue(waiter);
+            waiter.priority = priority;
+            waiter.request = request(context);
+            this.enqueue(waiter);
+        }
+    }
+
+    public synchronized int inFlight() {
+        return inFlight;
+    }
+
+    public synchronized int queued() {
+        return queued;
+    }
+
+    public synchronized int queued(Priority priority) {
+        int count = 0;
+        for (ArrayDeque<Waiter> waiters : this.queues.get(priority).values()) {
+            count += waiters.size();
+        }
+        return count;
+    }
+
+    /**
+     * Distinct requests with callers queued at {@code priority}.
+     */
+    public synchronized int queuedRequests(Priority priority) {
+        return this.queues.get(priority).size();
+    }
+
+    /**
+     * Current rate limit in calls per second.
+     */
+    public synchronized double rate() {
+        return rate;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("upstream.inflight", this, FetchScheduler::inFlight)
+                .description("Upstream calls currently in flight")
+                .tag("upstream", name)
+                .register(registry);
+        Gauge.builder("upstream.rate.limit", this, FetchScheduler::rate)
+                .description("Calls per second currently admitted to the upstream")
+                .tag("upstream", name)
+                .register(registry);
+        for (Priority priority : Priority.values()) {
+            String tag = priority.name().toLowerCase();
+            Gauge.builder("upstream.queued", this, scheduler -> scheduler.queued(priority))
+                    .description("Callers waiting to be admitted to the upstream")
+                    .tags("upstream", name, "priority", tag)
+                    .register(registry);
+            Timer timer = Timer.builder("upstream.queue.wait")
+                    .description("Time callers waited to be admitted to the upstream")
+                    .tags("upstream", name, "priority", tag)
+                    .register(registry);
+            synchronized (this) {
+                this.waitTimers.put(priority, timer);
+            }
+        }
+        Counter throttledCounter = Counter.builder("upstream.rate.decreases")
+                .description("Rate limit reductions after the upstream throttled a call")
+                .tags("upstream", name, "cause", "throttled")
+                .register(registry);
+        Counter slowCounter = Counter.builder("upstream.rate.decreases")
+                .description("Rate limit reductions after a call exceeded the latency target")
+                .tags("upstream", name, "cause", "slow")
+                .register(registry);
+        synchronized (this) {
+            this.throttled = throttledCounter;
+            this.slow = slowCounter;
+        }
+    }
+
+    private Mono<Permit> acquire(Object key, Priority priority, Object request) {
+        return Mono.create(sink -> {
+            Waiter waiter = new Waiter(sink, key, priority, request);
+            synchronized (this) {
+                if (this.queued >= this.maxQueued) {
+                    sink.error(new UpstreamSaturatedException("Too many pending requests to the " + name + " upstream"));
+                    return;
+                }
+                this.enqueue(waiter);
+            }
+            sink.onCancel(() -> {
+                if (waiter.state.compareAndSet(Waiter.WAITING, Waiter.CANCELLED)) {
+                    synchronized (this) {
+                        this.dequeue(waiter);
+                    }
+                } else {
+                    // granted concurrently with the cancellation: the permit never reaches the caller
+                    waiter.permit.cancelledNow();
+                }
+            });
+            this.drain();
+        });
+    }
+
+    /**
+     * Admits queued callers while permits and tokens last, and retries once the next token is due otherwise.
+     */
+    private void drain() {
+        List<Waiter> admitted = new ArrayList<>();
+        long now = System.nanoTime();
+        synchronized (this) {
+            this.refill(now);
+            while (this.queued > 0 && this.inFlight < this.maxConcurrent && this.tokens >= 1) {
+                Waiter next = this.next();
+                if (next.state.compareAndSet(Waiter.WAITING, Waiter.GRANTED)) {
+                    this.tokens--;
+                    this.inFlight++;
+                    next.permit.admittedAt = now;
+                    admitted.add(next);
+                }
+            }
+            if (this.queued > 0 && this.inFlight < this.maxConcurrent && !this.drainScheduled) {
+                this.drainScheduled = true;
+                long due = (long) Math.ceil((1 - this.tokens) / this.rate * TimeUnit.SECONDS.toNanos(1));
+                Schedulers.parallel().schedule(() -> {
+                    synchronized (this) {
+                        this.drainScheduled = false;
+                    }
+                    this.drain();
+                }, Math.max(due, 1), TimeUnit.NANOSECONDS);
+            }
+        }
+        for (Waiter waiter : admitted) {
+            Timer waited = this.waitTimer(waiter.priority);
+            if (waited != null) {
+                waited.record(now - waiter.enqueuedAt, TimeUnit.NANOSECONDS);
+            }
+            waiter.sink.success(waiter.permit);
+        }
+    }
+
+    /**
+     * Removes the next caller: interactive ones first, except that every {@value #BATCH_SHARE}th admission goes to a
+     * waiting batch caller, so background refreshes progress under sustained interactive load. Within a priority,
+     * the request at the head of the rotation is served and then moves to the back.
+     */
+    private Waiter next() {
+        LinkedHashMap<Object, ArrayDeque<Waiter>> interactive = this.queues.get(Priority.INTERACTIVE);
+        LinkedHashMap<Object, ArrayDeque<Waiter>> batch = this.queues.get(Priority.BATCH);
+        boolean batchTurn = !batch.isEmpty() && (interactive.isEmpty() || this.interactiveStreak >= BATCH_SHARE - 1);
+        this.interactiveStreak = batchTurn ? 0 : Math.min(this.interactiveStreak + 1, BATCH_SHARE - 1);
+        LinkedHashMap<Object, ArrayDeque<Waiter>> requests = batchTurn ? batch : interactive;
+
+        Iterator<Map.Entry<Object, ArrayDeque<Waiter>>> rotation = requests.entrySet().iterator();
+        if (!rotation.hasNext()) {
+            throw new IllegalStateException("No queued caller although " + this.queued + " are counted");
+        }
+        Map.Entry<Object, ArrayDeque<Waiter>> head = rotation.next();
+        rotation.remove();
+        Waiter next = head.getValue().poll();
+        if (!head.getValue().isEmpty()) {
+            requests.put(head.getKey(), head.getValue());
+        }
+        this.queued--;
+        if (next.key != null) {
+            this.queuedByKey.remove(next.key, next);
+        }
+        return next;
+    }
+
+    private void enqueue(Waiter waiter) {
+        this.queues.get(waiter.priority).computeIfAbsent(waiter.request, request -> new ArrayDeque<>()).add(waiter);
+        this.queued++;
+        if (waiter.key != null) {
+            this.queuedByKey.putIfAbsent(waiter.key, waiter);
+        }
+    }
+
+    private void dequeue(Waiter waiter) {
+        LinkedHashMap<Object, ArrayDeque<Waiter>> requests = this.queues.get(waiter.priority);
+        ArrayDeque<Waiter> waiters = requests.get(waiter.request);
+        if (waiters == null || !waiters.remove(waiter)) {
+            return;
+        }
+        if (waiters.isEmpty()) {
+            requests.remove(waiter.request);
+        }
+        this.queued--;
+        if (waiter.key != null) {
+            this.queuedByKey.remove(waiter.key, waiter);
+        }
+    }
+
+    private void refill(long now) {
+        this.tokens = Math.min(this.burst(), this.tokens + (now - this.refilledAt) / 1e9 * this.rate);
+        this.refilledAt = now;
+    }
+
+    /**
+     * Tokens the bucket holds at most: one second of calls, and never less than one call.
+     */
+    private double burst() {
+        return Math.max(1, this.rate);
+    }
+
+    private void release(long latencyNanos, Throwable error, boolean completed) {
+        synchronized (this) {
+            this.inFlight--;
+            if (completed) {
+                this.adapt(latencyNanos, error);
+            }
+        }
+        this.drain();
+    }
+
+    private void adapt(long latencyNanos, Throwable error) {
+        boolean upstreamThrottled = error instanceof WebClientResponseException response
+                && (response.getStatusCode().isSameCodeAs(HttpStatus.TOO_MANY_REQUESTS)
+                || response.getStatusCode().isSameCodeAs(HttpStatus.SERVICE_UNAVAILABLE));
+        boolean tooSlow = latencyNanos > this.latencyTargetNanos;
+        if (upstreamThrottled || tooSlow) {
+            long now = System.nanoTime();
+            // calls admitted before the last decrease still report the old load, so decrease at most once per interval
+            if (now - this.decreasedAt >= this.latencyTargetNanos) {
+                this.rate = Math.max(this.minRate, this.rate * (upstreamThrottled ? THROTTLED_DECREASE : SLOW_DECREASE));
+                this.tokens = Math.min(this.tokens, this.burst());
+                this.decreasedAt = now;
+                Counter decreases = upstreamThrottled ? this.throttled : this.slow;
+                if (decreases != null) {
+                    decreases.increment();
+                }
+            }
+        } else if (error == null) {
+            // about one more call per second for every second the limit is used in full
+            this.rate = Math.min(this.maxRate, this.rate + 1 / this.rate);
+        }
+    }
+
+    private synchronized Timer waitTimer(Priority priority) {
+        return this.waitTimers.get(priority);
+    }
+
+    private static Priority priority(ContextView context) {
+        return context.getOrDefault(PRIORITY, Priority.INTERACTIVE);
+    }
+
+    private static Object request(ContextView context) {
+        return context.getOrDefault(REQUEST, SHARED_REQUEST);
+    }
+
+    private final class Permit {
+
+        private final AtomicBoolean released = new AtomicBoolean();
+        private long admittedAt;
+
+        private Mono<Void> succeeded() {
+            return Mono.fromRunnable(() -> this.release(System.nanoTime() - this.admittedAt, null, true));
+        }
+
+        private Mono<Void> failed(Throwable error) {
+            return Mono.fromRunnable(() -> this.release(System.nanoTime() - this.admittedAt, error, true));
+        }
+
+        private Mono<Void> cancelled() {
+            return Mono.fromRunnable(this::cancelledNow);
+        }
+
+        // a cancelled call says nothing about the upstream
+        private void cancelledNow() {
+            this.release(0, null, false);
+        }
+
+        private void release(long latencyNanos, Throwable error, boolean completed) {
+            if (released.compareAndSet(false, true)) {
+                FetchScheduler.this.release(latencyNanos, error, completed);
+            }
+        }
+    }
+
+    private final class Waiter {
+
+        private static final int WAITING = 0;
+        private static final int GRANTED = 1;
+        private static final int CANCELLED = 2;
+
+        private final MonoSink<Permit> sink;
+        private final Object key;
+        private final Permit permit = new Permit();
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private final long enqueuedAt = System.nanoTime();
+        // guarded by the scheduler
+        private Priority priority;
+        private Object request;
+
+        private Waiter(MonoSink<Permit> sink, Object key, Priority priority, Object request) {
+            this.sink = sink;
+            this.key = key;
+            this.priority = priority;
+            this.request = request;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.ryanair.task.interconnected_flights.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.ryanair.task.interconnected_flights.model.DirectRoute;
+import org.springframework.core.codec.DecodingException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Incremental decoder of the /routes payload. Chunks are fed as they arrive to a non-blocking Jackson parser and
+ * only the fields the route graph needs are read: routes with a connecting airport or another operator are dropped
+ * while parsing, and every other value (group, flags, nested content) is skipped without building a string.
+ * Airport codes are interned per payload, so the thousands of routes share one string per airport.
+ * <p>
+ * A decoder holds the parsing state of a single response and is not thread-safe.
+ */
+public final class RouteStreamDecoder {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final int ROUTE_DEPTH = 2;
+
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private final Map<String, String> airports = new HashMap<>();
+    private int depth;
+    private String field;
+    private String origin;
+    private String destination;
+    private boolean connecting;
+    private boolean ryanair;
+
+    public RouteStreamDecoder() {
+        try {
+            this.parser = JSON_FACTORY.createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        this.feeder = (ByteArrayFeeder) this.parser.getNonBlockingInputFeeder();
+    }
+
+    /**
+     * Parses the next chunk of the payload and returns the routes completed by it.
+     */
+    public List<DirectRoute> feed(byte[] bytes, int offset, int length) {
+        try {
+            this.feeder.feedInput(bytes, offset, offset + length);
+        } catch (IOException e) {
+            throw new DecodingException("Could not read the routes payload", e);
+        }
+        return this.drain();
+    }
+
+    /**
+     * Signals that the payload is complete and returns the routes still pending, failing on a truncated payload.
+     */
+    public List<DirectRoute> endOfInput() {
+        this.feeder.endOfInput();
+        List<DirectRoute> routes = this.drain();
+        if (this.depth != 0) {
+            throw new DecodingException("Truncated routes payload");
+        }
+        return routes;
+    }
+
+    private List<DirectRoute> drain() {
+        List<DirectRoute> routes = new ArrayList<>();
+        try {
+            JsonToken token;
+            while ((token = this.parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                switch (token) {
+                    case START_OBJECT, START_ARRAY -> {
+                        this.depth++;
+                        if (this.depth == ROUTE_DEPTH) {
+                            this.startRoute();
+                        }
+                    }
+                    case END_OBJECT, END_ARRAY -> {
+                        if (this.depth == ROUTE_DEPTH && this.origin != null && this.destination != null && !this.connecting && this.ryanair) {
+                            routes.add(new DirectRoute(this.origin, this.destination));
+                        }
+                        this.depth--;
+                    }
+                    case FIELD_NAME -> {
+                        if (this.depth == ROUTE_DEPTH) {
+                            this.field = this.parser.currentName();
+                        }
+                    }
+                    case VALUE_STRING -> {
+                        if (this.depth == ROUTE_DEPTH) {
+                            this.readValue();
+                        }
+                    }
+                    default -> {
+                        // numbers, booleans and nulls carry nothing the graph needs
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new DecodingException("Could not read the routes payload", e);
+        }
+        return routes;
+    }
+
+    private void startRoute() {
+        this.field = null;
+        this.origin = null;
+        this.destination = null;
+        this.connecting = false;
+        this.ryanair = false;
+    }
+
+    private void readValue() throws IOException {
+        if (this.field == null) {
+            return;
+        }
+        switch (this.field) {
+            case "airportFrom" -> this.origin = this.intern(this.parser.getText());
+            case "airportTo" -> this.destination = this.intern(this.parser.getText());
+            case "connectingAirport" -> this.connecting = true;
+            case "operator" -> this.ryanair = "RYANAIR".equals(this.parser.getText());
+            default -> {
+            }
+        }
+    }
+
+    private String intern(String airport) {
+        String interned = this.airports.putIfAbsent(airport, airport);
+        return interned != null ? interned : airport;
+    }
+}
@@ -1,20 +1,63 @@
 package com.ryanair.task.interconnected_flights.client;
 
-import com.ryanair.task.interconnected_flights.dto.RouteDTO;
+import com.ryanair.task.interconnected_flights.config.ResilienceProperties;
+import com.ryanair.task.interconnected_flights.config.UpstreamProperties;
+import com.ryanair.task.interconnected_flights.config.UpstreamWebClients;
+import com.ryanair.task.interconnected_flights.model.DirectRoute;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.observability.micrometer.Micrometer;
 import reactor.core.publisher.Flux;
 
+import java.util.Objects;
+
 @Component
 public class RoutesClient {
+    private static final String DEFAULT_BASE_URL = "https://services-api.ryanair.com/views/locate/3";
+
     private final WebClient webClient;
+    private final FetchScheduler scheduler;
+    private final UpstreamResilience resilience;
+    private final ObservationRegistry observationRegistry;
 
-    public RoutesClient(WebClient.Builder webClient){
-        this.webClient = webClient.baseUrl("https://services-api.ryanair.com/views/locate/3").build();
+    public RoutesClient(WebClient.Builder webClient, UpstreamProperties upstreamProperties,
+                        ResilienceProperties resilienceProperties, MeterRegistry meterRegistry,
+                        ObservationRegistry observationRegistry){
+        UpstreamProperties.Client properties = upstreamProperties.routes();
+        this.webClient = UpstreamWebClients.create(webClient, "routes",
+                Objects.requireNonNullElse(properties.baseUrl(), DEFAULT_BASE_URL), properties);
+        this.scheduler = new FetchScheduler("routes", properties.maxConcurrentRequests(), properties.maxQueuedRequests(),
+                properties.maxRequestsPerSecond(), properties.minRequestsPerSecond(), properties.latencyTarget());
+        this.resilience = new UpstreamResilience("routes", resilienceProperties.routes(), meterRegistry);
+        this.scheduler.bindTo(meterRegistry);
+        this.observationRegistry = observationRegistry;
     }
 
-    public Flux<RouteDTO> getRoutes(){
-        return this.webClient.get().uri("/routes").retrieve().bodyToFlux(RouteDTO.class);
+    /**
+     * Streams the direct Ryanair routes, decoding the route list chunk by chunk as it arrives.
+     */
+    public Flux<DirectRoute> getRoutes(){
+        Flux<DirectRoute> routes = Flux.defer(() -> {
+            RouteStreamDecoder decoder = new RouteStreamDecoder();
+            return this.webClient.get().uri("/routes").retrieve().bodyToFlux(DataBuffer.class)
+                    .concatMapIterable(buffer -> {
+                        try {
+                            byte[] chunk = new byte[buffer.readableByteCount()];
+                            buffer.read(chunk);
+                            return decoder.feed(chunk, 0, chunk.length);
+                        } finally {
+                            DataBufferUtils.release(buffer);
+                        }
+                    })
+                    .concatWith(Flux.defer(() -> Flux.fromIterable(decoder.endOfInput())));
+        });
+        return this.resilience.protect(routes, this.scheduler::schedule)
+                .name("upstream.routes.fetch")
+                .tap(Micrometer.observation(this.observationRegistry));
     }
 
 
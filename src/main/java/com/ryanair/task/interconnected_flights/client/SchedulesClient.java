@@ -1,22 +1,216 @@
 package com.ryanair.task.interconnected_flights.client;
 
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.ryanair.task.interconnected_flights.config.ResilienceProperties;
+import com.ryanair.task.interconnected_flights.config.UpstreamProperties;
+import com.ryanair.task.interconnected_flights.config.UpstreamWebClients;
 import com.ryanair.task.interconnected_flights.dto.MonthScheduleDTO;
+import com.ryanair.task.interconnected_flights.model.CachedTimetable;
+import com.ryanair.task.interconnected_flights.model.ScheduleKey;
+import com.ryanair.task.interconnected_flights.model.Timetable;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.observability.micrometer.Micrometer;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
 @Component
 public class SchedulesClient {
+    private static final String DEFAULT_BASE_URL = "https://services-api.ryanair.com/timtbl/3/schedules";
+
     private final WebClient webClient;
+    private final FetchScheduler scheduler;
+    private final UpstreamResilience resilience;
+    private final AsyncLoadingCache<ScheduleKey, CachedTimetable> cache;
+    private final Timer servedAge;
+    private final ObservationRegistry observationRegistry;
+    private final Duration refreshAfter;
+    private final Duration ttl;
+    private final List<Consumer<ScheduleKey>> changeListeners = new CopyOnWriteArrayList<>();
+
+    public SchedulesClient(WebClient.Builder webclient,
+                           UpstreamProperties upstreamProperties,
+                           ResilienceProperties resilienceProperties,
+                           MeterRegistry meterRegistry,
+                           ObservationRegistry observationRegistry,
+                           @Value("${schedules.cache.maximum-size:10000}") long maximumSize,
+                           @Value("${schedules.cache.refresh-after:PT5M}") Duration refreshAfter,
+                           @Value("${schedules.cache.ttl:PT2H}") Duration ttl){
+        UpstreamProperties.Client properties = upstreamProperties.schedules();
+        this.webClient = UpstreamWebClients.create(webclient, "schedules",
+                Objects.requireNonNullElse(properties.baseUrl(), DEFAULT_BASE_URL), properties);
+        this.scheduler = new FetchScheduler("schedules", properties.maxConcurrentRequests(), properties.maxQueuedRequests(),
+                properties.maxRequestsPerSecond(), properties.minRequestsPerSecond(), properties.latencyTarget());
+        this.resilience = new UpstreamResilience("schedules", resilienceProperties.schedules(), meterRegistry);
+        this.scheduler.bindTo(meterRegistry);
+        this.observationRegistry = observationRegistry;
+        // entries older than refreshAfter are still served while a background reload runs; a failed reload keeps
+        // the previous value, so only data older than ttl is ever dropped because of an unhealthy upstream
+        this.refreshAfter = refreshAfter;
+        this.ttl = ttl;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .refreshAfterWrite(refreshAfter)
+                // expiry counts from the upstream fetch, so entries restored from a snapshot keep their real age
+                .expireAfter(Expiry.writing((ScheduleKey key, CachedTimetable entry) -> remaining(ttl, entry)))
+                .recordStats()
+                .buildAsync(new AsyncCacheLoader<>() {
+                    @Override
+                    public CompletableFuture<CachedTimetable> asyncLoad(ScheduleKey key, Executor executor) {
+                        return SchedulesClient.this.fetchTimetable(key).toFuture();
+                    }
+
+                    @Override
+                    public CompletableFuture<CachedTimetable> asyncReload(ScheduleKey key, CachedTimetable previous, Executor executor) {
+                        return SchedulesClient.this.fetchTimetable(key)
+                                .doOnNext(reloaded -> {
+                                    if (!reloaded.timetable().sameFlights(previous.timetable())) {
+                                        SchedulesClient.this.changeListeners.forEach(listener -> listener.accept(key));
+                                    }
+                                })
+                                // nobody waits for a refresh: the previous value is served meanwhile
+                                .contextWrite(FetchScheduler.withPriority(FetchScheduler.Priority.BATCH))
+                                .toFuture();
+                    }
+                });
+        this.servedAge = Timer.builder("schedules.cache.served.age")
+                .description("Age of the schedule data served to searches")
+                .register(meterRegistry);
+        FunctionCounter.builder("schedules.cache.requests", this.cache, cache -> cache.synchronous().stats().hitCount())
+                .description("Schedule lookups answered from the cache, or joining a fetch in flight")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("schedules.cache.requests", this.cache, cache -> cache.synchronous().stats().missCount())
+                .description("Schedule lookups that started an upstream fetch")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        FunctionCounter.builder("schedules.cache.loads", this.cache, cache -> cache.synchronous().stats().loadSuccessCount())
+                .description("Month schedules fetched or refreshed into the cache")
+                .tag("result", "success")
+                .register(meterRegistry);
+        FunctionCounter.builder("schedules.cache.loads", this.cache, cache -> cache.synchronous().stats().loadFailureCount())
+                .description("Month schedule fetches or refreshes that failed")
+                .tag("result", "failure")
+                .register(meterRegistry);
+        Gauge.builder("schedules.cache.hit.ratio", this.cache, cache -> cache.synchronous().stats().hitRate())
+                .description("Share of schedule lookups answered without a new upstream fetch")
+                .register(meterRegistry);
+        Gauge.builder("schedules.cache.size", this.cache, cache -> cache.synchronous().estimatedSize())
+                .description("Month schedules currently cached")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the decoded month timetable for a route, sharing one upstream call between all concurrent subscribers
+     * of the same (departure, arrival, year, month) and serving later ones from the cache. A fetch is scheduled with
+     * the priority of the subscriber that triggers it, and raised to the priority of any subscriber joining it while
+     * it is still queued.
+     */
+    public Mono<Timetable> getSchedule(String departure, String arrival, int year, int month) {
+        ScheduleKey key = new ScheduleKey(departure, arrival, year, month);
+        return Mono.deferContextual(context -> Mono.fromFuture(() -> {
+                    CompletableFuture<CachedTimetable> entry = this.cache.get(key,
+                            (missing, executor) -> this.fetchTimetable(missing).contextWrite(FetchScheduler.scheduling(context)).toFuture());
+                    if (!entry.isDone()) {
+                        this.scheduler.promote(key, context);
+                    }
+                    return entry;
+                }, true)
+                .map(entry -> {
+                    this.servedAge.record(Duration.between(entry.fetchedAt(), Instant.now()));
+                    return entry.timetable();
+                })
+                .name("schedules.get")
+                .tag("cache", this.cacheOutcome(key))
+                .tap(Micrometer.observation(this.observationRegistry)));
+    }
+
+    /**
+     * Registers a callback invoked whenever a background refresh finds that a cached month schedule changed upstream.
+     */
+    public void onChange(Consumer<ScheduleKey> listener) {
+        this.changeListeners.add(listener);
+    }
+
+    /**
+     * Current cache content, as persisted by the timetable snapshot.
+     */
+    public Map<ScheduleKey, CachedTimetable> cachedSchedules() {
+        return Map.copyOf(this.cache.synchronous().asMap());
+    }
+
+    /**
+     * Seeds the cache with previously fetched schedules and reconciles the ones older than the refresh interval
+     * against the upstream in the background.
+     */
+    public void restore(Map<ScheduleKey, CachedTimetable> schedules) {
+        Instant staleBefore = Instant.now().minus(this.refreshAfter);
+        schedules.forEach((key, entry) -> {
+            if (remaining(this.ttl, entry).isZero()) {
+                return;
+            }
+            this.cache.put(key, CompletableFuture.completedFuture(entry));
+            if (entry.fetchedAt().isBefore(staleBefore)) {
+                this.cache.synchronous().refresh(key);
+            }
+        });
+    }
+
+    public UpstreamResilience resilience() {
+        return this.resilience;
+    }
+
+    private Mono<CachedTimetable> fetchTimetable(ScheduleKey key) {
+        return this.resilience.protect(this.fetchSchedule(key).collectList(), call -> this.scheduler.schedule(key, call))
+                // tagged before the 404 fallback, so the error tag carries the upstream status of failed fetches
+                .name("upstream.schedules.fetch")
+                .tap(Micrometer.observation(this.observationRegistry))
+                // the timetable API answers 404 for months a route is not operated
+                .onErrorResume(WebClientResponseException.NotFound.class, notFound -> Mono.just(List.of()))
+                .map(schedules -> new CachedTimetable(Timetable.of(YearMonth.of(key.year(), key.month()), schedules), Instant.now()));
+    }
+
+    /**
+     * Whether a lookup is served from a loaded entry, joins a fetch already in flight or triggers a new one.
+     * Reads through the map view so the probe does not count in the cache statistics.
+     */
+    private String cacheOutcome(ScheduleKey key) {
+        CompletableFuture<CachedTimetable> entry = this.cache.asMap().get(key);
+        if (entry == null) {
+            return "miss";
+        }
+        return entry.isDone() ? "hit" : "pending";
+    }
 
-    public SchedulesClient(WebClient.Builder webclient){
-        this.webClient = webclient.baseUrl("https://services-api.ryanair.com/timtbl/3/schedules").build();
+    private static Duration remaining(Duration ttl, CachedTimetable entry) {
+        Duration remaining = ttl.minus(Duration.between(entry.fetchedAt(), Instant.now()));
+        return remaining.isNegative() ? Duration.ZERO : remaining;
     }
 
-    public Flux<MonthScheduleDTO> getSchedule(String departure, String arrival, int year, int month) {
+    private Flux<MonthScheduleDTO> fetchSchedule(ScheduleKey key) {
         return webClient.get()
-                .uri("/" + departure + "/" + arrival + "/years/" + year + "/months/" + month)
+                .uri("/" + key.departure() + "/" + key.arrival() + "/years/" + key.year() + "/months/" + key.month())
                 .retrieve()
                 .bodyToFlux(MonthScheduleDTO.class);
     }
@@ -0,0 +1,86 @@
+package com.ryanair.task.interconnected_flights.client;
+
+import com.ryanair.task.interconnected_flights.config.ResilienceProperties;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+import reactor.util.retry.RetryBackoffSpec;
+
+import java.util.concurrent.TimeoutException;
+import java.util.function.UnaryOperator;
+
+/**
+ * Retries transient upstream failures with jittered exponential backoff and opens a circuit breaker after sustained
+ * failures or slowness, so a dead upstream is not hammered with requests that will fail anyway.
+ * The breaker state is published as the {@code upstream.circuit.state} gauge (0 closed, 1 open, 2 half-open).
+ */
+public final class UpstreamResilience {
+
+    private final CircuitBreaker circuitBreaker;
+    private final RetryBackoffSpec retry;
+
+    public UpstreamResilience(String name, ResilienceProperties.Upstream properties, MeterRegistry meterRegistry) {
+        this.circuitBreaker = CircuitBreaker.of(name, CircuitBreakerConfig.custom()
+                .failureRateThreshold(properties.failureRateThreshold())
+                .slowCallDurationThreshold(properties.slowCallDurationThreshold())
+                .slowCallRateThreshold(properties.slowCallRateThreshold())
+                .slidingWindowSize(properties.slidingWindowSize())
+                .minimumNumberOfCalls(properties.minimumNumberOfCalls())
+                .waitDurationInOpenState(properties.waitDurationInOpenState())
+                .permittedNumberOfCallsInHalfOpenState(properties.permittedCallsInHalfOpenState())
+                .automaticTransitionFromOpenToHalfOpenEnabled(true)
+                .recordException(UpstreamResilience::isTransient)
+                .build());
+        this.retry = Retry.backoff(properties.maxRetries(), properties.retryBackoff())
+                .maxBackoff(properties.maxRetryBackoff())
+                .jitter(0.5)
+                .filter(UpstreamResilience::isTransient)
+                // callers see the failure of the last attempt rather than reactor's RetryExhaustedException
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+
+        Gauge.builder("upstream.circuit.state", this.circuitBreaker, UpstreamResilience::stateValue)
+                .description("Circuit breaker state of the upstream: 0 closed, 1 open, 2 half-open")
+                .tag("upstream", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Guards {@code call} with the breaker and retries it, passing every attempt through {@code admission} (the
+     * upstream's fetch scheduler) between the two: time spent queued is neither a slow call for the breaker nor
+     * held across retries.
+     */
+    public <T> Mono<T> protect(Mono<T> call, UnaryOperator<Mono<T>> admission) {
+        return admission.apply(call.transformDeferred(CircuitBreakerOperator.of(this.circuitBreaker))).retryWhen(this.retry);
+    }
+
+    public <T> Flux<T> protect(Flux<T> call, UnaryOperator<Flux<T>> admission) {
+        return admission.apply(call.transformDeferred(CircuitBreakerOperator.of(this.circuitBreaker))).retryWhen(this.retry);
+    }
+
+    public CircuitBreaker.State state() {
+        return this.circuitBreaker.getState();
+    }
+
+    static boolean isTransient(Throwable error) {
+        if (error instanceof WebClientResponseException responseException) {
+            return responseException.getStatusCode().is5xxServerError() || responseException.getStatusCode().value() == 429;
+        }
+        return error instanceof WebClientRequestException || error instanceof TimeoutException;
+    }
+
+    private static double stateValue(CircuitBreaker circuitBreaker) {
+        return switch (circuitBreaker.getState()) {
+            case CLOSED -> 0;
+            case OPEN, FORCED_OPEN -> 1;
+            case HALF_OPEN -> 2;
+            default -> -1;
+        };
+    }
+}
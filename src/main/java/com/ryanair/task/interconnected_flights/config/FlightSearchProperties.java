@@ -0,0 +1,44 @@
+package com.ryanair.task.interconnected_flights.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Tunables of the itinerary search, bound from the {@code flights.*} properties.
+ *
+ * @param minConnectionTime        minimum time between landing and the next departure at a stopover
+ * @param maxConnectionTime        maximum time between landing and the next departure at a stopover
+ * @param scheduleFetchConcurrency maximum number of month schedules fetched concurrently per route
+ * @param defaultMaxStops          number of stops searched when the request does not specify it
+ * @param maxStopsLimit            highest number of stops a request may ask for
+ * @param maxSearchWindow          longest time between the departure and arrival bounds of a request
+ * @param maxItineraries           most itineraries a single search returns; a larger {@code limit} is capped to it
+ * @param maxPartialItineraries    most partial itineraries one route may carry into its next leg before the search is refused
+ * @param batchMaxQueries          maximum number of queries accepted by a single batch request
+ * @param batchConcurrency         number of batch queries evaluated concurrently
+ * @param engine                   how live searches are executed
+ */
+@ConfigurationProperties("flights")
+public record FlightSearchProperties(
+        @DefaultValue("PT2H") Duration minConnectionTime,
+        @DefaultValue("PT24H") Duration maxConnectionTime,
+        @DefaultValue("8") int scheduleFetchConcurrency,
+        @DefaultValue("1") int defaultMaxStops,
+        @DefaultValue("3") int maxStopsLimit,
+        @DefaultValue("P31D") Duration maxSearchWindow,
+        @DefaultValue("5000") int maxItineraries,
+        @DefaultValue("100000") int maxPartialItineraries,
+        @DefaultValue("500") int batchMaxQueries,
+        @DefaultValue("16") int batchConcurrency,
+        @DefaultValue("reactive") Engine engine
+) {
+
+    public enum Engine {
+        /** one Reactor pipeline per search, on the Netty event loops */
+        REACTIVE,
+        /** blocking-style search with one virtual thread per route and per schedule fetch */
+        VIRTUAL_THREADS
+    }
+}
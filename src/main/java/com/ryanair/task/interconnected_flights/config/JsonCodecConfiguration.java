@@ -0,0 +1,19 @@
+package com.ryanair.task.interconnected_flights.config;
+
+import com.ryanair.task.interconnected_flights.controller.ItineraryJsonEncoder;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registers the pre-serializing {@link ItineraryJsonEncoder} ahead of the default Jackson encoder, so search results
+ * are written by it for JSON and NDJSON; server-sent events keep the Jackson encoder.
+ */
+@Configuration(proxyBeanMethods = false)
+public class JsonCodecConfiguration {
+
+    @Bean
+    public CodecCustomizer itineraryJsonCodec() {
+        return configurer -> configurer.customCodecs().register(new ItineraryJsonEncoder());
+    }
+}
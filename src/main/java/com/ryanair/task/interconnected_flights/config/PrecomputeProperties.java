@@ -0,0 +1,23 @@
+package com.ryanair.task.interconnected_flights.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.List;
+
+/**
+ * Bulk precomputation of one-stop itineraries, bound from the {@code precompute.*} properties.
+ *
+ * @param enabled     whether the precomputation job runs at all
+ * @param pairs       hot airport pairs to precompute, written as {@code DUB-WRO}
+ * @param horizonDays number of departure days precomputed, starting today
+ * @param concurrency number of (pair, day) tables computed concurrently
+ */
+@ConfigurationProperties("precompute")
+public record PrecomputeProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue List<String> pairs,
+        @DefaultValue("30") int horizonDays,
+        @DefaultValue("4") int concurrency
+) {
+}
@@ -0,0 +1,43 @@
+package com.ryanair.task.interconnected_flights.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Retry and circuit-breaker settings of the upstream APIs, bound from {@code resilience.routes.*} and
+ * {@code resilience.schedules.*}.
+ */
+@ConfigurationProperties("resilience")
+public record ResilienceProperties(
+        @DefaultValue Upstream routes,
+        @DefaultValue Upstream schedules
+) {
+
+    /**
+     * @param maxRetries                    retries of a transient failure before giving up
+     * @param retryBackoff                  first retry delay, doubled on every attempt and jittered by 50%
+     * @param maxRetryBackoff               upper bound of the retry delay
+     * @param failureRateThreshold          failure percentage that opens the breaker
+     * @param slowCallDurationThreshold     calls slower than this count as slow
+     * @param slowCallRateThreshold         slow-call percentage that opens the breaker
+     * @param slidingWindowSize             number of recent calls the rates are computed over
+     * @param minimumNumberOfCalls          calls needed before the rates are evaluated
+     * @param waitDurationInOpenState       how long the breaker rejects calls before probing again
+     * @param permittedCallsInHalfOpenState probe calls allowed while half-open
+     */
+    public record Upstream(
+            @DefaultValue("2") int maxRetries,
+            @DefaultValue("PT0.2S") Duration retryBackoff,
+            @DefaultValue("PT2S") Duration maxRetryBackoff,
+            @DefaultValue("50") float failureRateThreshold,
+            @DefaultValue("PT3S") Duration slowCallDurationThreshold,
+            @DefaultValue("80") float slowCallRateThreshold,
+            @DefaultValue("50") int slidingWindowSize,
+            @DefaultValue("20") int minimumNumberOfCalls,
+            @DefaultValue("PT30S") Duration waitDurationInOpenState,
+            @DefaultValue("5") int permittedCallsInHalfOpenState
+    ) {
+    }
+}
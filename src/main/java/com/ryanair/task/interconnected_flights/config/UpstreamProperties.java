@@ -0,0 +1,55 @@
+package com.ryanair.task.interconnected_flights.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * HTTP client settings of the Ryanair upstream APIs, bound from {@code upstream.routes.*} and {@code upstream.schedules.*}.
+ */
+@ConfigurationProperties("upstream")
+public record UpstreamProperties(
+        @DefaultValue Client routes,
+        @DefaultValue Client schedules
+) {
+
+    /**
+     * @param baseUrl                root URL of the API, defaulting to the public Ryanair endpoint of the upstream
+     * @param maxConnections         size of the connection pool
+     * @param pendingAcquireMaxCount requests allowed to wait for a pooled connection
+     * @param pendingAcquireTimeout  how long a request may wait for a pooled connection
+     * @param maxIdleTime            idle time after which pooled connections are closed
+     * @param connectTimeout         TCP connect timeout
+     * @param responseTimeout        maximum time between sending the request and receiving the response
+     * @param readTimeout            maximum inactivity while reading the response body
+     * @param maxInMemorySize        largest decoded body (or body element when streaming) accepted
+     * @param http2                  negotiate HTTP/2 over TLS, falling back to HTTP/1.1
+     * @param compression            request gzip-compressed responses
+     * @param maxConcurrentRequests  in-flight requests allowed before callers are queued
+     * @param maxQueuedRequests      queued callers allowed before new requests are rejected
+     * @param maxRequestsPerSecond   rate limit the calls start at and recover to
+     * @param minRequestsPerSecond   rate limit kept however often the upstream throttles or slows down
+     * @param latencyTarget          call duration beyond which the upstream is considered overloaded
+     */
+    public record Client(
+            String baseUrl,
+            @DefaultValue("100") int maxConnections,
+            @DefaultValue("500") int pendingAcquireMaxCount,
+            @DefaultValue("PT5S") Duration pendingAcquireTimeout,
+            @DefaultValue("PT30S") Duration maxIdleTime,
+            @DefaultValue("PT2S") Duration connectTimeout,
+            @DefaultValue("PT5S") Duration responseTimeout,
+            @DefaultValue("PT10S") Duration readTimeout,
+            @DefaultValue("2MB") DataSize maxInMemorySize,
+            @DefaultValue("true") boolean http2,
+            @DefaultValue("true") boolean compression,
+            @DefaultValue("64") int maxConcurrentRequests,
+            @DefaultValue("1000") int maxQueuedRequests,
+            @DefaultValue("200") double maxRequestsPerSecond,
+            @DefaultValue("5") double minRequestsPerSecond,
+            @DefaultValue("PT2S") Duration latencyTarget
+    ) {
+    }
+}
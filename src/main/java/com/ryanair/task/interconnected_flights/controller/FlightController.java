@@ -1,30 +1,58 @@
 package com.ryanair.task.interconnected_flights.controller;
 
+import com.ryanair.task.interconnected_flights.dto.DestinationDTO;
+import com.ryanair.task.interconnected_flights.dto.InterconnectionQueryDTO;
+import com.ryanair.task.interconnected_flights.dto.InterconnectionResultDTO;
 import com.ryanair.task.interconnected_flights.dto.RouteWithNStopDTO;
 import com.ryanair.task.interconnected_flights.exception.RouteNotFoundException;
+import com.ryanair.task.interconnected_flights.service.DepartureBoardService;
 import com.ryanair.task.interconnected_flights.service.FlightService;
+import com.ryanair.task.interconnected_flights.service.ItineraryOrder;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @RestController
 public class FlightController {
     private final FlightService flightService;
+    private final DepartureBoardService departureBoardService;
 
-    public FlightController(FlightService flightService){
+    public FlightController(FlightService flightService, DepartureBoardService departureBoardService){
         this.flightService = flightService;
+        this.departureBoardService = departureBoardService;
     }
 
-    @GetMapping("/interconnections")
+    @GetMapping(value = "/interconnections", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
     public ResponseEntity<Flux<RouteWithNStopDTO>> findFlights(@RequestParam String departure,
                                  @RequestParam String arrival,
                                  @RequestParam LocalDateTime departureDateTime,
-                                 @RequestParam LocalDateTime arrivalDateTime){
-        return ResponseEntity.ok(this.flightService.findFlights(departure, arrival, departureDateTime, arrivalDateTime));
+                                 @RequestParam LocalDateTime arrivalDateTime,
+                                 @RequestParam(required = false) Integer maxStops,
+                                 @RequestParam(required = false) String sort,
+                                 @RequestParam(required = false) Integer limit){
+        return ResponseEntity.ok(this.flightService.findFlights(departure, arrival, departureDateTime, arrivalDateTime,
+                maxStops, ItineraryOrder.parse(sort), limit));
 
     }
+
+    @PostMapping(value = "/interconnections/batch", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<Flux<InterconnectionResultDTO>> findFlightsBatch(@RequestBody List<InterconnectionQueryDTO> queries){
+        return ResponseEntity.ok(this.flightService.findFlightsBatch(queries));
+    }
+
+    @GetMapping(value = "/departures", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<Flux<DestinationDTO>> findDestinations(@RequestParam String departure,
+                                                                 @RequestParam LocalDateTime departureDateTime,
+                                                                 @RequestParam LocalDateTime arrivalDateTime,
+                                                                 @RequestParam(required = false) Integer maxStops){
+        return ResponseEntity.ok(this.departureBoardService.findDestinations(departure, departureDateTime, arrivalDateTime, maxStops));
+    }
 }
@@ -0,0 +1,227 @@
+package com.ryanair.task.interconnected_flights.controller;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.ryanair.task.interconnected_flights.dto.LegDTO;
+import com.ryanair.task.interconnected_flights.dto.RouteWithNStopDTO;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.HttpMessageEncoder;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * JSON and NDJSON writer of {@link RouteWithNStopDTO} results, producing the same bytes as the default Jackson encoder
+ * without going through it. Every itinerary is written straight into one buffer of the response's factory (pooled on
+ * Netty) from pre-encoded fragments: the field names and punctuation, the quoted airport codes, cached per code, and
+ * two-digit date parts, so no generator, serializer lookup or intermediate string is involved.
+ */
+public final class ItineraryJsonEncoder implements HttpMessageEncoder<RouteWithNStopDTO> {
+
+    private static final List<MimeType> MIME_TYPES = List.of(MediaType.APPLICATION_JSON, MediaType.APPLICATION_NDJSON);
+    private static final List<MediaType> STREAMING_MEDIA_TYPES = List.of(MediaType.APPLICATION_NDJSON);
+
+    // request parameters end up in the legs too, so unknown codes are only cached up to a bound
+    private static final int MAX_CACHED_AIRPORTS = 4096;
+    // enough for a two-leg itinerary without the buffer growing
+    private static final int ITINERARY_SIZE_HINT = 256;
+
+    private static final byte[] STOPS = ascii("{\"stops\":");
+    private static final byte[] LEGS = ascii(",\"legs\":[");
+    private static final byte[] DEPARTURE_AIRPORT = ascii("{\"departureAirport\":");
+    private static final byte[] ARRIVAL_AIRPORT = ascii(",\"arrivalAirport\":");
+    private static final byte[] DEPARTURE_DATE_TIME = ascii(",\"departureDateTime\":");
+    private static final byte[] ARRIVAL_DATE_TIME = ascii(",\"arrivalDateTime\":");
+    private static final byte[] ITINERARY_END = ascii("]}");
+    private static final byte[] NULL = ascii("null");
+    private static final byte[][] TWO_DIGITS = new byte[100][];
+    private static final byte[][] SMALL_NUMBERS = new byte[100][];
+
+    static {
+        for (int i = 0; i < 100; i++) {
+            TWO_DIGITS[i] = new byte[]{(byte) ('0' + i / 10), (byte) ('0' + i % 10)};
+            SMALL_NUMBERS[i] = ascii(Integer.toString(i));
+        }
+    }
+
+    private final Map<String, byte[]> airports = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean canEncode(ResolvableType elementType, MimeType mimeType) {
+        if (!RouteWithNStopDTO.class.equals(elementType.toClass())) {
+            return false;
+        }
+        if (mimeType == null) {
+            return true;
+        }
+        if (mimeType.getCharset() != null && !StandardCharsets.UTF_8.equals(mimeType.getCharset())) {
+            return false;
+        }
+        return MIME_TYPES.stream().anyMatch(supported -> supported.isCompatibleWith(mimeType));
+    }
+
+    @Override
+    public Flux<DataBuffer> encode(Publisher<? extends RouteWithNStopDTO> input, DataBufferFactory bufferFactory,
+                                   ResolvableType elementType, MimeType mimeType, Map<String, Object> hints) {
+        if (input instanceof Mono) {
+            return Mono.from(input).map(itinerary -> this.write(itinerary, bufferFactory, 0, 0)).flux();
+        }
+        if (mimeType != null && MediaType.APPLICATION_NDJSON.isCompatibleWith(mimeType)) {
+            return Flux.from(input).map(itinerary -> this.write(itinerary, bufferFactory, 0, '\n'));
+        }
+        // a JSON array written as it streams: the opening bracket travels with the first element, so a search that
+        // fails before its first result writes nothing and its error status can still be sent
+        return Flux.defer(() -> {
+            AtomicBoolean first = new AtomicBoolean(true);
+            return Flux.from(input)
+                    .map(itinerary -> this.write(itinerary, bufferFactory, first.getAndSet(false) ? '[' : ',', 0))
+                    .switchIfEmpty(Mono.fromCallable(() -> bufferFactory.wrap(new byte[]{'['})))
+                    .concatWith(Mono.fromCallable(() -> bufferFactory.wrap(new byte[]{']'})));
+        });
+    }
+
+    @Override
+    public DataBuffer encodeValue(RouteWithNStopDTO value, DataBufferFactory bufferFactory, ResolvableType valueType,
+                                  MimeType mimeType, Map<String, Object> hints) {
+        return this.write(value, bufferFactory, 0, 0);
+    }
+
+    @Override
+    public List<MimeType> getEncodableMimeTypes() {
+        return MIME_TYPES;
+    }
+
+    @Override
+    public List<MediaType> getStreamingMediaTypes() {
+        return STREAMING_MEDIA_TYPES;
+    }
+
+    /**
+     * One itinerary in a new buffer, preceded by {@code prefix} and followed by {@code suffix} unless they are 0.
+     */
+    private DataBuffer write(RouteWithNStopDTO itinerary, DataBufferFactory bufferFactory, int prefix, int suffix) {
+        DataBuffer buffer = bufferFactory.allocateBuffer(ITINERARY_SIZE_HINT);
+        try {
+            if (prefix != 0) {
+                buffer.write((byte) prefix);
+            }
+            buffer.write(STOPS);
+            writeNumber(buffer, itinerary.stops());
+            List<LegDTO> legs = itinerary.legs();
+            if (legs == null) {
+                buffer.write(LEGS, 0, LEGS.length - 1);
+                buffer.write(NULL);
+                buffer.write((byte) '}');
+            } else {
+                buffer.write(LEGS);
+                for (int i = 0; i < legs.size(); i++) {
+                    if (i > 0) {
+                        buffer.write((byte) ',');
+                    }
+                    this.writeLeg(buffer, legs.get(i));
+                }
+                buffer.write(ITINERARY_END);
+            }
+            if (suffix != 0) {
+                buffer.write((byte) suffix);
+            }
+            return buffer;
+        } catch (RuntimeException e) {
+            DataBufferUtils.release(buffer);
+            throw e;
+        }
+    }
+
+    private void writeLeg(DataBuffer buffer, LegDTO leg) {
+        if (leg == null) {
+            buffer.write(NULL);
+            return;
+        }
+        buffer.write(DEPARTURE_AIRPORT);
+        buffer.write(this.airport(leg.departureAirport()));
+        buffer.write(ARRIVAL_AIRPORT);
+        buffer.write(this.airport(leg.arrivalAirport()));
+        buffer.write(DEPARTURE_DATE_TIME);
+        writeDateTime(buffer, leg.departureDateTime());
+        buffer.write(ARRIVAL_DATE_TIME);
+        writeDateTime(buffer, leg.arrivalDateTime());
+        buffer.write((byte) '}');
+    }
+
+    /**
+     * The quoted, escaped UTF-8 form of an airport code.
+     */
+    private byte[] airport(String code) {
+        if (code == null) {
+            return NULL;
+        }
+        byte[] encoded = this.airports.get(code);
+        if (encoded != null) {
+            return encoded;
+        }
+        encoded = quote(code);
+        if (this.airports.size() < MAX_CACHED_AIRPORTS) {
+            this.airports.putIfAbsent(code, encoded);
+        }
+        return encoded;
+    }
+
+    /**
+     * Writes {@code dateTime} as Jackson does by default, i.e. ISO-8601 with seconds: {@code "2024-03-01T06:25:00"}.
+     */
+    private static void writeDateTime(DataBuffer buffer, LocalDateTime dateTime) {
+        if (dateTime == null) {
+            buffer.write(NULL);
+            return;
+        }
+        int year = dateTime.getYear();
+        if (dateTime.getNano() != 0 || year < 0 || year > 9999) {
+            // fractions of a second and extended years never come out of a timetable
+            buffer.write(quote(DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(dateTime)));
+            return;
+        }
+        buffer.write((byte) '"');
+        buffer.write(TWO_DIGITS[year / 100]);
+        buffer.write(TWO_DIGITS[year % 100]);
+        buffer.write((byte) '-');
+        buffer.write(TWO_DIGITS[dateTime.getMonthValue()]);
+        buffer.write((byte) '-');
+        buffer.write(TWO_DIGITS[dateTime.getDayOfMonth()]);
+        buffer.write((byte) 'T');
+        buffer.write(TWO_DIGITS[dateTime.getHour()]);
+        buffer.write((byte) ':');
+        buffer.write(TWO_DIGITS[dateTime.getMinute()]);
+        buffer.write((byte) ':');
+        buffer.write(TWO_DIGITS[dateTime.getSecond()]);
+        buffer.write((byte) '"');
+    }
+
+    private static void writeNumber(DataBuffer buffer, int value) {
+        buffer.write(value >= 0 && value < SMALL_NUMBERS.length ? SMALL_NUMBERS[value] : ascii(Integer.toString(value)));
+    }
+
+    private static byte[] quote(String value) {
+        byte[] escaped = JsonStringEncoder.getInstance().quoteAsUTF8(value);
+        byte[] quoted = new byte[escaped.length + 2];
+        quoted[0] = '"';
+        System.arraycopy(escaped, 0, quoted, 1, escaped.length);
+        quoted[quoted.length - 1] = '"';
+        return quoted;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,7 @@
+package com.ryanair.task.interconnected_flights.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public record DestinationDTO(String airport, int stops, LocalDateTime arrivalDateTime, List<LegDTO> legs) {
+}
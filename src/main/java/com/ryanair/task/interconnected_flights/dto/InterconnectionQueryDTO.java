@@ -0,0 +1,6 @@
+package com.ryanair.task.interconnected_flights.dto;
+
+import java.time.LocalDateTime;
+
+public record InterconnectionQueryDTO(String departure, String arrival, LocalDateTime departureDateTime, LocalDateTime arrivalDateTime, Integer maxStops) {
+}
@@ -0,0 +1,6 @@
+package com.ryanair.task.interconnected_flights.dto;
+
+import java.util.List;
+
+public record InterconnectionResultDTO(int index, InterconnectionQueryDTO query, List<RouteWithNStopDTO> routes, String error) {
+}
@@ -1,13 +1,21 @@
 package com.ryanair.task.interconnected_flights.exception;
 
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.util.concurrent.TimeoutException;
 
 @RestControllerAdvice
 public class GlobalExceptionHandler {
 
+    private static final String UPSTREAM_FAILURE = "Upstream service failed to answer";
+    private static final String INTERNAL_ERROR = "Internal server error";
+
     @ExceptionHandler(RouteNotFoundException.class)
     public ResponseEntity<String> handleRouteNotFoundException(RouteNotFoundException ex) {
         return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
@@ -17,4 +25,39 @@ public class GlobalExceptionHandler {
     public ResponseEntity<String> handleNoSchedulesFoundException(NoSchedulesFoundException ex) {
         return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
     }
-}
\ No newline at end of file
+
+    @ExceptionHandler(InvalidSearchException.class)
+    public ResponseEntity<String> handleInvalidSearchException(InvalidSearchException ex) {
+        return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(UpstreamSaturatedException.class)
+    public ResponseEntity<String> handleUpstreamSaturatedException(UpstreamSaturatedException ex) {
+        return new ResponseEntity<>(ex.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @ExceptionHandler(CallNotPermittedException.class)
+    public ResponseEntity<String> handleCallNotPermittedException(CallNotPermittedException ex) {
+        return new ResponseEntity<>(ex.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @ExceptionHandler({WebClientResponseException.class, WebClientRequestException.class, TimeoutException.class})
+    public ResponseEntity<String> handleUpstreamFailure(Exception ex) {
+        return new ResponseEntity<>(UPSTREAM_FAILURE, HttpStatus.BAD_GATEWAY);
+    }
+
+    /**
+     * The message the handlers above answer for {@code error}, for failures reported inside a response body.
+     * Unexpected failures are not described to the client.
+     */
+    public static String clientMessage(Throwable error) {
+        if (error instanceof RouteNotFoundException || error instanceof NoSchedulesFoundException || error instanceof InvalidSearchException
+                || error instanceof UpstreamSaturatedException || error instanceof CallNotPermittedException) {
+            return error.getMessage();
+        }
+        if (error instanceof WebClientResponseException || error instanceof WebClientRequestException || error instanceof TimeoutException) {
+            return UPSTREAM_FAILURE;
+        }
+        return INTERNAL_ERROR;
+    }
+}
@@ -0,0 +1,7 @@
+package com.ryanair.task.interconnected_flights.exception;
+
+public class InvalidSearchException extends RuntimeException {
+    public InvalidSearchException(String message) {
+        super(message);
+    }
+}
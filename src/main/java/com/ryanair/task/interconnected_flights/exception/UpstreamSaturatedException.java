@@ -0,0 +1,7 @@
+package com.ryanair.task.interconnected_flights.exception;
+
+public class UpstreamSaturatedException extends RuntimeException {
+    public UpstreamSaturatedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,59 @@
+package com.ryanair.task.interconnected_flights.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dense integer ids of the airports of one route graph, assigned when the graph is built. Internally airports are
+ * compared and indexed by id; IATA codes are only looked up when a search enters or a result leaves the model.
+ */
+public final class AirportRegistry {
+
+    public static final int UNKNOWN = -1;
+
+    private final Map<String, Integer> ids;
+    private final String[] codes;
+
+    private AirportRegistry(Map<String, Integer> ids, String[] codes) {
+        this.ids = ids;
+        this.codes = codes;
+    }
+
+    /**
+     * Id of the airport with the given code, or {@link #UNKNOWN} if it is not part of the graph.
+     */
+    public int id(String code) {
+        Integer id = ids.get(code);
+        return id == null ? UNKNOWN : id;
+    }
+
+    public String code(int id) {
+        return codes[id];
+    }
+
+    public int size() {
+        return codes.length;
+    }
+
+    static final class Builder {
+
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> codes = new ArrayList<>();
+
+        int register(String code) {
+            Integer id = ids.get(code);
+            if (id == null) {
+                id = codes.size();
+                ids.put(code, id);
+                codes.add(code);
+            }
+            return id;
+        }
+
+        AirportRegistry build() {
+            return new AirportRegistry(Map.copyOf(ids), codes.toArray(String[]::new));
+        }
+    }
+}
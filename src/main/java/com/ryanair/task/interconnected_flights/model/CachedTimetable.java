@@ -0,0 +1,6 @@
+package com.ryanair.task.interconnected_flights.model;
+
+import java.time.Instant;
+
+public record CachedTimetable(Timetable timetable, Instant fetchedAt) {
+}
@@ -0,0 +1,109 @@
+package com.ryanair.task.interconnected_flights.model;
+
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Every departure of one airport in one month, over all its routes, as parallel arrays sorted by departure.
+ * The month is divided into fixed time slots and {@code slotOffsets} points at the first departure of each slot,
+ * so a departure window is scanned from its first slot without searching, and only the departures inside it are read.
+ */
+public final class DepartureIndex {
+
+    public static final int SLOT_MINUTES = 60;
+
+    private final int monthStart;
+    private final int monthEnd;
+    private final int[] slotOffsets;
+    private final int[] departures;
+    private final int[] arrivals;
+    private final String[] destinations;
+
+    private DepartureIndex(int monthStart, int monthEnd, int[] slotOffsets, int[] departures, int[] arrivals, String[] destinations) {
+        this.monthStart = monthStart;
+        this.monthEnd = monthEnd;
+        this.slotOffsets = slotOffsets;
+        this.departures = departures;
+        this.arrivals = arrivals;
+        this.destinations = destinations;
+    }
+
+    /**
+     * Indexes the flights departing in {@code month} from the timetables of each destination's route.
+     */
+    public static DepartureIndex of(YearMonth month, Map<String, Timetable> timetables) {
+        int monthStart = Timetable.toEpochMinute(month.atDay(1).atStartOfDay());
+        int monthEnd = Timetable.toEpochMinute(month.plusMonths(1).atDay(1).atStartOfDay());
+
+        int count = 0;
+        for (Timetable timetable : timetables.values()) {
+            count += timetable.size();
+        }
+        long[] order = new long[count];
+        int[] unsortedDepartures = new int[count];
+        int[] unsortedArrivals = new int[count];
+        String[] unsortedDestinations = new String[count];
+        int size = 0;
+        for (Map.Entry<String, Timetable> route : timetables.entrySet()) {
+            Timetable timetable = route.getValue();
+            for (int i = timetable.firstDepartureAtOrAfter(monthStart); i < timetable.size() && timetable.departure(i) < monthEnd; i++) {
+                unsortedDepartures[size] = timetable.departure(i);
+                unsortedArrivals[size] = timetable.arrival(i);
+                unsortedDestinations[size] = route.getKey();
+                // minutes since the month start in the high bits, the entry in the low ones
+                order[size] = ((long) (timetable.departure(i) - monthStart) << 32) | size;
+                size++;
+            }
+        }
+        Arrays.sort(order, 0, size);
+
+        int[] departures = new int[size];
+        int[] arrivals = new int[size];
+        String[] destinations = new String[size];
+        for (int i = 0; i < size; i++) {
+            int source = (int) order[i];
+            departures[i] = unsortedDepartures[source];
+            arrivals[i] = unsortedArrivals[source];
+            destinations[i] = unsortedDestinations[source];
+        }
+
+        int slots = (monthEnd - monthStart + SLOT_MINUTES - 1) / SLOT_MINUTES;
+        int[] slotOffsets = new int[slots + 1];
+        int next = 0;
+        for (int slot = 0; slot <= slots; slot++) {
+            int slotStart = monthStart + slot * SLOT_MINUTES;
+            while (next < size && departures[next] < slotStart) {
+                next++;
+            }
+            slotOffsets[slot] = next;
+        }
+        return new DepartureIndex(monthStart, monthEnd, slotOffsets, departures, arrivals, destinations);
+    }
+
+    public int size() {
+        return departures.length;
+    }
+
+    /**
+     * Reports every departure in {@code [fromMinute, toMinute]} in departure order.
+     */
+    public void scan(int fromMinute, int toMinute, DepartureConsumer consumer) {
+        int from = Math.max(fromMinute, this.monthStart);
+        if (from >= this.monthEnd || from > toMinute) {
+            return;
+        }
+        int i = this.slotOffsets[(from - this.monthStart) / SLOT_MINUTES];
+        while (i < departures.length && departures[i] < from) {
+            i++;
+        }
+        for (; i < departures.length && departures[i] <= toMinute; i++) {
+            consumer.accept(destinations[i], departures[i], arrivals[i]);
+        }
+    }
+
+    @FunctionalInterface
+    public interface DepartureConsumer {
+        void accept(String destination, int departure, int arrival);
+    }
+}
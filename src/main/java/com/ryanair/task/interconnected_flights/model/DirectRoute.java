@@ -0,0 +1,7 @@
+package com.ryanair.task.interconnected_flights.model;
+
+/**
+ * Route operated by Ryanair itself without a stopover, as kept from the upstream route list.
+ */
+public record DirectRoute(String origin, String destination) {
+}
@@ -1,6 +1,66 @@
 package com.ryanair.task.interconnected_flights.model;
 
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
 
-public record FlightRoute(List<String> airports) {
-}
\ No newline at end of file
+/**
+ * Sequence of airports flown through, from origin to destination, held as ids of the route graph's {@link AirportRegistry}.
+ */
+public final class FlightRoute {
+
+    private final int[] airportIds;
+    private final AirportRegistry registry;
+
+    FlightRoute(int[] airportIds, AirportRegistry registry) {
+        this.airportIds = airportIds;
+        this.registry = registry;
+    }
+
+    public int airportCount() {
+        return airportIds.length;
+    }
+
+    public int airportId(int index) {
+        return airportIds[index];
+    }
+
+    /**
+     * IATA code of the airport at {@code index}, looked up in the registry.
+     */
+    public String airport(int index) {
+        return registry.code(airportIds[index]);
+    }
+
+    /**
+     * IATA codes of the airports, as a view resolving each code on access.
+     */
+    public List<String> airports() {
+        return new AbstractList<>() {
+            @Override
+            public String get(int index) {
+                return registry.code(airportIds[index]);
+            }
+
+            @Override
+            public int size() {
+                return airportIds.length;
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof FlightRoute route && route.registry == registry && Arrays.equals(route.airportIds, airportIds);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(airportIds);
+    }
+
+    @Override
+    public String toString() {
+        return "FlightRoute" + airports();
+    }
+}
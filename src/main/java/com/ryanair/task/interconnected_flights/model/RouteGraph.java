@@ -0,0 +1,227 @@
+package com.ryanair.task.interconnected_flights.model;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable snapshot of the operated route network, indexed by airport in both directions. Airports are dense ids
+ * of the graph's {@link AirportRegistry} and each adjacency is a slice of one shared int array (compressed sparse
+ * rows), so the whole network fits in a handful of primitive arrays.
+ */
+public final class RouteGraph {
+
+    public static final RouteGraph EMPTY = new Builder().build(Instant.EPOCH);
+
+    private final AirportRegistry airports;
+    private final int[] destinationOffsets;
+    private final int[] destinations;
+    private final int[] originOffsets;
+    private final int[] origins;
+    private final Instant loadedAt;
+
+    private RouteGraph(AirportRegistry airports, int[] destinationOffsets, int[] destinations, int[] originOffsets, int[] origins, Instant loadedAt) {
+        this.airports = airports;
+        this.destinationOffsets = destinationOffsets;
+        this.destinations = destinations;
+        this.originOffsets = originOffsets;
+        this.origins = origins;
+        this.loadedAt = loadedAt;
+    }
+
+    public AirportRegistry airports() {
+        return airports;
+    }
+
+    public List<String> destinationsFrom(String origin) {
+        return codes(airports.id(origin), destinationOffsets, destinations);
+    }
+
+    public List<String> originsTo(String destination) {
+        return codes(airports.id(destination), originOffsets, origins);
+    }
+
+    public boolean hasRoute(String origin, String destination) {
+        int from = airports.id(origin);
+        int to = airports.id(destination);
+        return from != AirportRegistry.UNKNOWN && to != AirportRegistry.UNKNOWN
+                && Arrays.binarySearch(destinations, destinationOffsets[from], destinationOffsets[from + 1], to) >= 0;
+    }
+
+    /**
+     * Enumerates every loop-free path from {@code origin} to {@code destination} with at most {@code maxStops}
+     * intermediate airports, fewest stops first. A reverse breadth-first search from the destination bounds how
+     * many legs are still needed from each airport, so branches that cannot reach it within budget are never expanded.
+     */
+    public List<FlightRoute> findRoutes(String origin, String destination, int maxStops) {
+        int from = airports.id(origin);
+        int to = airports.id(destination);
+        int maxLegs = maxStops + 1;
+        if (from == AirportRegistry.UNKNOWN || to == AirportRegistry.UNKNOWN || from == to) {
+            return List.of();
+        }
+        int[] legsToDestination = legsTo(to, maxLegs);
+        if (legsToDestination[from] > maxLegs) {
+            return List.of();
+        }
+
+        List<FlightRoute> routes = new ArrayList<>();
+        int[] path = new int[maxLegs + 1];
+        path[0] = from;
+        BitSet visited = new BitSet(airports.size());
+        visited.set(from);
+        extendPath(path, 1, to, maxLegs, legsToDestination, visited, routes);
+        routes.sort(Comparator.comparingInt(FlightRoute::airportCount));
+        return routes;
+    }
+
+    public void forEachRoute(BiConsumer<String, String> consumer) {
+        for (int origin = 0; origin < airports.size(); origin++) {
+            for (int i = destinationOffsets[origin]; i < destinationOffsets[origin + 1]; i++) {
+                consumer.accept(airports.code(origin), airports.code(destinations[i]));
+            }
+        }
+    }
+
+    public int routeCount() {
+        return destinations.length;
+    }
+
+    public Instant loadedAt() {
+        return loadedAt;
+    }
+
+    /**
+     * Fewest legs from every airport to {@code destination}, or {@code maxLegs + 1} where it needs more than {@code maxLegs}.
+     */
+    private int[] legsTo(int destination, int maxLegs) {
+        int[] legsToDestination = new int[airports.size()];
+        Arrays.fill(legsToDestination, maxLegs + 1);
+        legsToDestination[destination] = 0;
+        int[] queue = new int[airports.size()];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = destination;
+        while (head < tail) {
+            int airport = queue[head++];
+            int legs = legsToDestination[airport];
+            if (legs == maxLegs) {
+                continue;
+            }
+            for (int i = originOffsets[airport]; i < originOffsets[airport + 1]; i++) {
+                int origin = origins[i];
+                if (legsToDestination[origin] > maxLegs) {
+                    legsToDestination[origin] = legs + 1;
+                    queue[tail++] = origin;
+                }
+            }
+        }
+        return legsToDestination;
+    }
+
+    private void extendPath(int[] path, int length, int destination, int maxLegs, int[] legsToDestination, BitSet visited, List<FlightRoute> routes) {
+        int airport = path[length - 1];
+        if (airport == destination) {
+            routes.add(new FlightRoute(Arrays.copyOf(path, length), airports));
+            return;
+        }
+        int legsLeft = maxLegs - length;
+        for (int i = destinationOffsets[airport]; i < destinationOffsets[airport + 1]; i++) {
+            int next = destinations[i];
+            if (legsToDestination[next] > legsLeft || visited.get(next)) {
+                continue;
+            }
+            path[length] = next;
+            visited.set(next);
+            extendPath(path, length + 1, destination, maxLegs, legsToDestination, visited, routes);
+            visited.clear(next);
+        }
+    }
+
+    private List<String> codes(int airport, int[] offsets, int[] neighbours) {
+        if (airport == AirportRegistry.UNKNOWN) {
+            return List.of();
+        }
+        List<String> codes = new ArrayList<>(offsets[airport + 1] - offsets[airport]);
+        for (int i = offsets[airport]; i < offsets[airport + 1]; i++) {
+            codes.add(airports.code(neighbours[i]));
+        }
+        return codes;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+
+        private final AirportRegistry.Builder airports = new AirportRegistry.Builder();
+        private long[] routes = new long[1024];
+        private int routeCount;
+
+        private Builder() {
+        }
+
+        public Builder addRoute(String origin, String destination) {
+            if (routeCount == routes.length) {
+                routes = Arrays.copyOf(routes, routeCount * 2);
+            }
+            routes[routeCount++] = pack(airports.register(origin), airports.register(destination));
+            return this;
+        }
+
+        public RouteGraph build() {
+            return build(Instant.now());
+        }
+
+        public RouteGraph build(Instant loadedAt) {
+            AirportRegistry registry = airports.build();
+            long[] forward = distinct(Arrays.copyOf(routes, routeCount));
+            long[] backward = new long[forward.length];
+            for (int i = 0; i < forward.length; i++) {
+                backward[i] = pack((int) forward[i], (int) (forward[i] >>> 32));
+            }
+            Arrays.sort(backward);
+
+            int[] destinationOffsets = new int[registry.size() + 1];
+            int[] destinations = new int[forward.length];
+            int[] originOffsets = new int[registry.size() + 1];
+            int[] origins = new int[backward.length];
+            compress(forward, destinationOffsets, destinations);
+            compress(backward, originOffsets, origins);
+            return new RouteGraph(registry, destinationOffsets, destinations, originOffsets, origins, loadedAt);
+        }
+
+        private static long pack(int from, int to) {
+            return (long) from << 32 | to;
+        }
+
+        private static long[] distinct(long[] packed) {
+            Arrays.sort(packed);
+            int size = 0;
+            for (int i = 0; i < packed.length; i++) {
+                if (i == 0 || packed[i] != packed[i - 1]) {
+                    packed[size++] = packed[i];
+                }
+            }
+            return Arrays.copyOf(packed, size);
+        }
+
+        /**
+         * Turns sorted (from, to) pairs into row offsets per {@code from} and the {@code to} column.
+         */
+        private static void compress(long[] sorted, int[] offsets, int[] columns) {
+            for (int i = 0; i < sorted.length; i++) {
+                offsets[(int) (sorted[i] >>> 32) + 1]++;
+                columns[i] = (int) sorted[i];
+            }
+            for (int airport = 0; airport < offsets.length - 1; airport++) {
+                offsets[airport + 1] += offsets[airport];
+            }
+        }
+    }
+}
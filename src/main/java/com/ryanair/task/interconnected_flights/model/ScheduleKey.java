@@ -0,0 +1,4 @@
+package com.ryanair.task.interconnected_flights.model;
+
+public record ScheduleKey(String departure, String arrival, int year, int month) {
+}
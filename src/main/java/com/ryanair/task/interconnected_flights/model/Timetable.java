@@ -0,0 +1,203 @@
+package com.ryanair.task.interconnected_flights.model;
+
+import com.ryanair.task.interconnected_flights.dto.DayDTO;
+import com.ryanair.task.interconnected_flights.dto.FlightDTO;
+import com.ryanair.task.interconnected_flights.dto.MonthScheduleDTO;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Decoded schedule of a single route, stored as parallel primitive arrays sorted by departure.
+ * Times are minutes since the epoch in the airports' local time, so flights of different days
+ * (and overnight arrivals) compare with a single int comparison.
+ */
+public final class Timetable {
+
+    public static final Timetable EMPTY = new Timetable(new int[0], new int[0], new String[0]);
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    private final int[] departures;
+    private final int[] arrivals;
+    private final String[] flightNumbers;
+
+    private Timetable(int[] departures, int[] arrivals, String[] flightNumbers) {
+        this.departures = departures;
+        this.arrivals = arrivals;
+        this.flightNumbers = flightNumbers;
+    }
+
+    /**
+     * Decodes the upstream schedules of {@code month}, parsing every departure and arrival time exactly once.
+     */
+    public static Timetable of(YearMonth month, List<MonthScheduleDTO> schedules) {
+        int monthStart = toEpochMinute(month.atDay(1).atStartOfDay());
+        int count = 0;
+        for (MonthScheduleDTO schedule : schedules) {
+            for (DayDTO day : schedule.days()) {
+                count += day.flights().size();
+            }
+        }
+        if (count == 0) {
+            return EMPTY;
+        }
+
+        int[] departures = new int[count];
+        int[] arrivals = new int[count];
+        String[] flightNumbers = new String[count];
+        int index = 0;
+        for (MonthScheduleDTO schedule : schedules) {
+            for (DayDTO day : schedule.days()) {
+                int dayStart = monthStart + (day.day() - 1) * MINUTES_PER_DAY;
+                for (FlightDTO flight : day.flights()) {
+                    int departure = minuteOfDay(flight.departureTime());
+                    int arrival = minuteOfDay(flight.arrivalTime());
+                    if (arrival < departure) {
+                        arrival += MINUTES_PER_DAY;
+                    }
+                    departures[index] = dayStart + departure;
+                    arrivals[index] = dayStart + arrival;
+                    flightNumbers[index] = flight.number();
+                    index++;
+                }
+            }
+        }
+        return sortedByDeparture(departures, arrivals, flightNumbers);
+    }
+
+    /**
+     * Wraps already decoded arrays, sorting them by departure if needed. The arrays are owned by the timetable afterwards.
+     */
+    public static Timetable of(int[] departures, int[] arrivals, String[] flightNumbers) {
+        if (departures.length == 0) {
+            return EMPTY;
+        }
+        for (int i = 1; i < departures.length; i++) {
+            if (departures[i - 1] > departures[i]) {
+                return sortedByDeparture(departures, arrivals, flightNumbers);
+            }
+        }
+        return new Timetable(departures, arrivals, flightNumbers);
+    }
+
+    /**
+     * Merges several timetables of the same route (typically consecutive months) into a single timeline.
+     */
+    public static Timetable merge(List<Timetable> timetables) {
+        if (timetables.size() == 1) {
+            return timetables.get(0);
+        }
+        int count = timetables.stream().mapToInt(Timetable::size).sum();
+        int[] departures = new int[count];
+        int[] arrivals = new int[count];
+        String[] flightNumbers = new String[count];
+        int offset = 0;
+        boolean sorted = true;
+        for (Timetable timetable : timetables) {
+            if (timetable.size() == 0) {
+                continue;
+            }
+            sorted &= offset == 0 || departures[offset - 1] <= timetable.departures[0];
+            System.arraycopy(timetable.departures, 0, departures, offset, timetable.size());
+            System.arraycopy(timetable.arrivals, 0, arrivals, offset, timetable.size());
+            System.arraycopy(timetable.flightNumbers, 0, flightNumbers, offset, timetable.size());
+            offset += timetable.size();
+        }
+        if (count == 0) {
+            return EMPTY;
+        }
+        return sorted ? new Timetable(departures, arrivals, flightNumbers) : sortedByDeparture(departures, arrivals, flightNumbers);
+    }
+
+    public int size() {
+        return departures.length;
+    }
+
+    public int departure(int index) {
+        return departures[index];
+    }
+
+    public int arrival(int index) {
+        return arrivals[index];
+    }
+
+    public String flightNumber(int index) {
+        return flightNumbers[index];
+    }
+
+    /**
+     * Index of the first flight departing at or after {@code epochMinute}, or {@link #size()} if there is none.
+     */
+    public int firstDepartureAtOrAfter(int epochMinute) {
+        int low = 0;
+        int high = departures.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (departures[mid] < epochMinute) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Whether both timetables list exactly the same flights.
+     */
+    public boolean sameFlights(Timetable other) {
+        return Arrays.equals(departures, other.departures)
+                && Arrays.equals(arrivals, other.arrivals)
+                && Arrays.equals(flightNumbers, other.flightNumbers);
+    }
+
+    /**
+     * Content hash of the flights departing in {@code [fromMinute, toMinute)}, used to detect schedule changes.
+     */
+    public long hashRange(int fromMinute, int toMinute) {
+        long hash = 1;
+        for (int i = firstDepartureAtOrAfter(fromMinute); i < departures.length && departures[i] < toMinute; i++) {
+            hash = 31 * hash + departures[i];
+            hash = 31 * hash + arrivals[i];
+            hash = 31 * hash + Objects.hashCode(flightNumbers[i]);
+        }
+        return hash;
+    }
+
+    public static int toEpochMinute(LocalDateTime dateTime) {
+        return (int) (dateTime.toEpochSecond(ZoneOffset.UTC) / 60);
+    }
+
+    public static LocalDateTime toDateTime(int epochMinute) {
+        return LocalDateTime.ofEpochSecond(epochMinute * 60L, 0, ZoneOffset.UTC);
+    }
+
+    private static int minuteOfDay(String time) {
+        return LocalTime.parse(time).toSecondOfDay() / 60;
+    }
+
+    private static Timetable sortedByDeparture(int[] departures, int[] arrivals, String[] flightNumbers) {
+        long[] order = new long[departures.length];
+        for (int i = 0; i < departures.length; i++) {
+            order[i] = ((long) departures[i] << 32) | i;
+        }
+        Arrays.sort(order);
+
+        int[] sortedDepartures = new int[departures.length];
+        int[] sortedArrivals = new int[departures.length];
+        String[] sortedFlightNumbers = new String[departures.length];
+        for (int i = 0; i < order.length; i++) {
+            int source = (int) order[i];
+            sortedDepartures[i] = departures[source];
+            sortedArrivals[i] = arrivals[source];
+            sortedFlightNumbers[i] = flightNumbers[source];
+        }
+        return new Timetable(sortedDepartures, sortedArrivals, sortedFlightNumbers);
+    }
+}
@@ -0,0 +1,10 @@
+package com.ryanair.task.interconnected_flights.model;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Resident route network and schedules as persisted on disk; {@code routes} is null when no route graph was loaded yet.
+ */
+public record TimetableSnapshot(Instant savedAt, RouteGraph routes, Map<ScheduleKey, CachedTimetable> schedules) {
+}
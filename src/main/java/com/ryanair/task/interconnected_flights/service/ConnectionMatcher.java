@@ -0,0 +1,64 @@
+package com.ryanair.task.interconnected_flights.service;
+
+import com.ryanair.task.interconnected_flights.model.Timetable;
+
+import java.time.Duration;
+import java.util.function.IntConsumer;
+
+/**
+ * Joins two consecutive legs on their timetables. Both timetables are already sorted by departure, so for every
+ * inbound flight the first outbound flight that respects the minimum connection time is found by binary search
+ * and only the flights departing within the connection window are walked, instead of comparing every pair of flights.
+ */
+public final class ConnectionMatcher {
+
+    private final int minConnectionMinutes;
+    private final int maxConnectionMinutes;
+
+    public ConnectionMatcher(Duration minConnectionTime, Duration maxConnectionTime) {
+        this.minConnectionMinutes = Math.toIntExact(minConnectionTime.toMinutes());
+        this.maxConnectionMinutes = Math.toIntExact(maxConnectionTime.toMinutes());
+    }
+
+    public int minConnectionMinutes() {
+        return minConnectionMinutes;
+    }
+
+    public int maxConnectionMinutes() {
+        return maxConnectionMinutes;
+    }
+
+    /**
+     * Reports every pair (inbound, outbound) where inbound is in {@code [inboundFrom, inboundTo)}, the outbound
+     * flight leaves between the minimum and the maximum connection time after the inbound one lands and lands
+     * no later than {@code latestArrival}.
+     */
+    public void match(Timetable inbound, int inboundFrom, int inboundTo,
+                      Timetable outbound, int latestArrival,
+                      ConnectionConsumer consumer) {
+        for (int i = inboundFrom; i < inboundTo; i++) {
+            int inboundFlight = i;
+            connectionsFrom(inbound.arrival(i), outbound, latestArrival, outboundFlight -> consumer.accept(inboundFlight, outboundFlight));
+        }
+    }
+
+    /**
+     * Reports every outbound flight that can be caught after landing at {@code arrival}, without waiting longer
+     * than the maximum connection time, and lands no later than {@code latestArrival}.
+     */
+    public void connectionsFrom(int arrival, Timetable outbound, int latestArrival, IntConsumer consumer) {
+        int latestDeparture = Math.min(latestArrival, arrival + maxConnectionMinutes);
+        for (int j = outbound.firstDepartureAtOrAfter(arrival + minConnectionMinutes);
+             j < outbound.size() && outbound.departure(j) <= latestDeparture;
+             j++) {
+            if (outbound.arrival(j) <= latestArrival) {
+                consumer.accept(j);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface ConnectionConsumer {
+        void accept(int inbound, int outbound);
+    }
+}
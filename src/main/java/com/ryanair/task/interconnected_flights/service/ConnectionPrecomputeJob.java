@@ -0,0 +1,179 @@
+package com.ryanair.task.interconnected_flights.service;
+
+import com.ryanair.task.interconnected_flights.client.FetchScheduler;
+import com.ryanair.task.interconnected_flights.client.SchedulesClient;
+import com.ryanair.task.interconnected_flights.config.PrecomputeProperties;
+import com.ryanair.task.interconnected_flights.exception.NoSchedulesFoundException;
+import com.ryanair.task.interconnected_flights.exception.RouteNotFoundException;
+import com.ryanair.task.interconnected_flights.model.FlightRoute;
+import com.ryanair.task.interconnected_flights.model.ScheduleKey;
+import com.ryanair.task.interconnected_flights.model.Timetable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Precomputes the direct and one-stop itineraries of the configured hot airport pairs for the coming days.
+ * The job is incremental: a day is only recomputed when the routes or the schedules it depends on changed
+ * since the last run, which is detected by fingerprinting the relevant slice of every leg's timetable. Besides the
+ * nightly run, the days a month schedule feeds are rechecked as soon as a background refresh reports it changed.
+ */
+@Service
+public class ConnectionPrecomputeJob {
+
+    private static final Logger log = LoggerFactory.getLogger(ConnectionPrecomputeJob.class);
+
+    private final RouteGraphService routeGraphService;
+    private final SchedulesClient schedulesClient;
+    private final FlightService flightService;
+    private final PrecomputedItineraryStore store;
+    private final PrecomputeProperties properties;
+
+    public ConnectionPrecomputeJob(RouteGraphService routeGraphService, SchedulesClient schedulesClient, FlightService flightService,
+                                   PrecomputedItineraryStore store, PrecomputeProperties properties) {
+        this.routeGraphService = routeGraphService;
+        this.schedulesClient = schedulesClient;
+        this.flightService = flightService;
+        this.store = store;
+        this.properties = properties;
+        schedulesClient.onChange(this::scheduleChanged);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${precompute.cron:0 0 3 * * *}")
+    public void scheduledRun() {
+        if (!this.properties.enabled()) {
+            return;
+        }
+        long start = System.nanoTime();
+        this.run(LocalDate.now()).subscribe(
+                recomputed -> log.info("Precomputed {} connection tables in {} ms", recomputed, (System.nanoTime() - start) / 1_000_000),
+                error -> log.warn("Connection precomputation failed, keeping previous tables", error));
+    }
+
+    private void scheduleChanged(ScheduleKey changed) {
+        if (!this.properties.enabled()) {
+            return;
+        }
+        this.refreshChanged(changed, LocalDate.now()).subscribe(
+                recomputed -> log.debug("Recomputed {} connection tables after {} changed", recomputed, changed),
+                error -> log.warn("Connection recomputation after {} changed failed", changed, error));
+    }
+
+    /**
+     * Refreshes every changed (pair, day) table from {@code today} over the configured horizon and drops older days.
+     * Emits the number of tables that were recomputed.
+     */
+    public Mono<Integer> run(LocalDate today) {
+        return this.refresh(this.tasks(today))
+                .map(recomputed -> {
+                    this.store.evictBefore(today);
+                    return recomputed;
+                });
+    }
+
+    /**
+     * Refreshes the (pair, day) tables within the horizon that a changed month schedule can feed: a leg of a
+     * direct or one-stop route leaves the pair's origin or reaches its destination, and a day reads the schedules
+     * of every month its coverage window touches. Days whose slice of the schedule is unchanged keep their tables.
+     * Emits the number of tables that were recomputed.
+     */
+    public Mono<Integer> refreshChanged(ScheduleKey changed, LocalDate today) {
+        YearMonth month = YearMonth.of(changed.year(), changed.month());
+        return this.refresh(this.tasks(today)
+                .filter(task -> task.departure().equals(changed.departure()) || task.arrival().equals(changed.arrival()))
+                .filter(task -> !YearMonth.from(task.date()).isAfter(month)
+                        && !YearMonth.from(task.date().plusDays(PrecomputedItineraryStore.DAY_COVERAGE_DAYS)).isBefore(month)));
+    }
+
+    private Flux<Task> tasks(LocalDate today) {
+        return Flux.fromIterable(this.properties.pairs())
+                .map(pair -> pair.split("-", 2))
+                .filter(pair -> pair.length == 2)
+                .flatMap(pair -> Flux.range(0, this.properties.horizonDays())
+                        .map(offset -> new Task(pair[0], pair[1], today.plusDays(offset))));
+    }
+
+    private Mono<Integer> refresh(Flux<Task> tasks) {
+        AtomicInteger recomputed = new AtomicInteger();
+        return tasks
+                .flatMap(task -> this.refreshDay(task.departure(), task.arrival(), task.date())
+                                .doOnNext(changed -> {
+                                    if (changed) {
+                                        recomputed.incrementAndGet();
+                                    }
+                                })
+                                .onErrorResume(error -> {
+                                    log.warn("Could not precompute {}-{} on {}", task.departure(), task.arrival(), task.date(), error);
+                                    return Mono.empty();
+                                }),
+                        this.properties.concurrency())
+                .then(Mono.fromCallable(recomputed::get))
+                .contextWrite(FetchScheduler.withPriority(FetchScheduler.Priority.BATCH));
+    }
+
+    private Mono<Boolean> refreshDay(String departure, String arrival, LocalDate date) {
+        return this.fingerprint(departure, arrival, date).flatMap(fingerprint -> {
+            if (this.store.fingerprint(departure, arrival, date).orElse(~fingerprint) == fingerprint) {
+                return Mono.just(false);
+            }
+            LocalDateTime from = date.atStartOfDay();
+            LocalDateTime to = date.plusDays(PrecomputedItineraryStore.DAY_COVERAGE_DAYS).atStartOfDay();
+            // the live search departs strictly after its window start, so start one minute before midnight
+            return this.flightService.findFlightsLive(departure, arrival, from.minusMinutes(1), to, 1)
+                    .filter(itinerary -> itinerary.legs().get(0).departureDateTime().toLocalDate().equals(date))
+                    .collectList()
+                    // a pair without routes or flights that day is cached as empty; upstream failures are not
+                    .onErrorResume(error -> error instanceof RouteNotFoundException || error instanceof NoSchedulesFoundException,
+                            error -> Mono.just(List.of()))
+                    .map(itineraries -> {
+                        this.store.put(departure, arrival, date, fingerprint, itineraries);
+                        return true;
+                    });
+        });
+    }
+
+    /**
+     * Hashes the candidate routes of the pair together with every flight their legs operate in the day's window.
+     */
+    private Mono<Long> fingerprint(String departure, String arrival, LocalDate date) {
+        int from = Timetable.toEpochMinute(date.atStartOfDay());
+        int to = Timetable.toEpochMinute(date.plusDays(PrecomputedItineraryStore.DAY_COVERAGE_DAYS).atStartOfDay());
+        List<YearMonth> months = List.of(YearMonth.from(date), YearMonth.from(date.plusDays(PrecomputedItineraryStore.DAY_COVERAGE_DAYS))).stream()
+                .distinct()
+                .toList();
+
+        return this.routeGraphService.getGraph()
+                .flatMapIterable(graph -> graph.findRoutes(departure, arrival, 1))
+                .concatMap(route -> this.legsFingerprint(route, months, from, to))
+                .reduce(1L, (hash, routeHash) -> 31 * hash + routeHash);
+    }
+
+    private Mono<Long> legsFingerprint(FlightRoute route, List<YearMonth> months, int from, int to) {
+        // hashed by code, since ids are only stable within one build of the route graph
+        long routeHash = 1;
+        for (int airport = 0; airport < route.airportCount(); airport++) {
+            routeHash = 31 * routeHash + route.airport(airport).hashCode();
+        }
+        return Flux.range(0, route.airportCount() - 1)
+                .concatMap(leg -> Flux.fromIterable(months)
+                        .concatMap(month -> this.schedulesClient.getSchedule(route.airport(leg), route.airport(leg + 1), month.getYear(), month.getMonthValue()))
+                        .collectList()
+                        .map(timetables -> Timetable.merge(timetables).hashRange(from, to)))
+                .reduce(routeHash, (hash, legHash) -> 31 * hash + legHash);
+    }
+
+    private record Task(String departure, String arrival, LocalDate date) {
+    }
+}
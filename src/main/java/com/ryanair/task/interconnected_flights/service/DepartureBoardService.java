@@ -0,0 +1,226 @@
+package com.ryanair.task.interconnected_flights.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ryanair.task.interconnected_flights.client.FetchScheduler;
+import com.ryanair.task.interconnected_flights.client.SchedulesClient;
+import com.ryanair.task.interconnected_flights.config.FlightSearchProperties;
+import com.ryanair.task.interconnected_flights.dto.DestinationDTO;
+import com.ryanair.task.interconnected_flights.dto.LegDTO;
+import com.ryanair.task.interconnected_flights.exception.InvalidSearchException;
+import com.ryanair.task.interconnected_flights.exception.NoSchedulesFoundException;
+import com.ryanair.task.interconnected_flights.exception.RouteNotFoundException;
+import com.ryanair.task.interconnected_flights.model.DepartureIndex;
+import com.ryanair.task.interconnected_flights.model.RouteGraph;
+import com.ryanair.task.interconnected_flights.model.Timetable;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.observability.micrometer.Micrometer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Answers departure-board queries: every destination reachable from one airport within a time window, with the
+ * earliest arrival at each. Each airport's departures are kept in a {@link DepartureIndex} per month, built from the
+ * route graph and the cached month schedules and dropped when one of those schedules changes, so a whole fan-out is
+ * one range scan of the origin plus, for one-stop answers, one range scan of each stopover.
+ */
+@Service
+public class DepartureBoardService {
+
+    private static final Logger log = LoggerFactory.getLogger(DepartureBoardService.class);
+
+    private final RouteGraphService routeGraphService;
+    private final SchedulesClient schedulesClient;
+    private final FlightSearchProperties properties;
+    private final ObservationRegistry observationRegistry;
+    private final int minConnectionMinutes;
+    private final int maxConnectionMinutes;
+    private final int maxStopovers;
+    private final AsyncCache<IndexKey, Built> indexes;
+    private final Counter skippedRoutes;
+
+    public DepartureBoardService(RouteGraphService routeGraphService,
+                                 SchedulesClient schedulesClient,
+                                 FlightSearchProperties properties,
+                                 MeterRegistry meterRegistry,
+                                 ObservationRegistry observationRegistry,
+                                 @Value("${departures.index.maximum-size:500}") long maximumSize,
+                                 @Value("${departures.index.ttl:PT30M}") Duration ttl,
+                                 @Value("${departures.max-stopovers:64}") int maxStopovers) {
+        this.routeGraphService = routeGraphService;
+        this.schedulesClient = schedulesClient;
+        this.properties = properties;
+        this.observationRegistry = observationRegistry;
+        this.minConnectionMinutes = Math.toIntExact(properties.minConnectionTime().toMinutes());
+        this.maxConnectionMinutes = Math.toIntExact(properties.maxConnectionTime().toMinutes());
+        this.maxStopovers = maxStopovers;
+        // route network changes are only picked up when an index expires
+        this.indexes = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .buildAsync();
+        schedulesClient.onChange(key -> this.indexes.synchronous().invalidate(new IndexKey(key.departure(), YearMonth.of(key.year(), key.month()))));
+        Gauge.builder("departures.index.size", this.indexes, indexes -> indexes.synchronous().estimatedSize())
+                .description("Airport-months currently indexed for departure searches")
+                .register(meterRegistry);
+        this.skippedRoutes = Counter.builder("departures.index.skipped.routes")
+                .description("Routes left off a departure index because their schedule could not be fetched")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Every airport reachable from {@code departure} leaving after {@code departureDate} and landing no later than
+     * {@code arrivalDate}, with at most {@code maxStops} (0 or 1) stops, earliest arrival first. A destination reached
+     * both ways is reported direct unless a connection lands strictly earlier. One-stop answers connect through the
+     * {@code departures.max-stopovers} stopovers reached first.
+     */
+    public Flux<DestinationDTO> findDestinations(String departure, LocalDateTime departureDate, LocalDateTime arrivalDate, Integer maxStops) {
+        int stops = maxStops == null ? Math.min(this.properties.defaultMaxStops(), 1) : maxStops;
+        if (stops < 0 || stops > 1) {
+            return Flux.error(new InvalidSearchException("maxStops must be 0 or 1 for departure searches"));
+        }
+        if (Duration.between(departureDate, arrivalDate).compareTo(this.properties.maxSearchWindow()) > 0) {
+            return Flux.error(new InvalidSearchException("The search window may span at most " + this.properties.maxSearchWindow().toDays() + " days"));
+        }
+        List<YearMonth> months = new ArrayList<>();
+        for (YearMonth month = YearMonth.from(departureDate); !month.isAfter(YearMonth.from(arrivalDate)); month = month.plusMonths(1)) {
+            months.add(month);
+        }
+        int earliestDeparture = Timetable.toEpochMinute(departureDate) + 1;
+        int latestArrival = Timetable.toEpochMinute(arrivalDate);
+
+        return this.routeGraphService.getGraph()
+                .flatMap(graph -> {
+                    if (graph.destinationsFrom(departure).isEmpty()) {
+                        return Mono.error(new RouteNotFoundException("No available routes from " + departure));
+                    }
+                    return this.indexes(graph, departure, months).flatMap(origin -> {
+                        Map<String, Reach> earliest = new HashMap<>();
+                        for (DepartureIndex index : origin) {
+                            index.scan(earliestDeparture, latestArrival, (destination, legDeparture, legArrival) -> {
+                                Reach current = earliest.get(destination);
+                                if (legArrival <= latestArrival && (current == null || legArrival < current.arrival())) {
+                                    earliest.put(destination, new Reach(departure, null, 0, 0, destination, legDeparture, legArrival));
+                                }
+                            });
+                        }
+                        if (stops == 0) {
+                            return Mono.just(earliest);
+                        }
+
+                        // landing earlier at a stopover can only add connections, so its earliest arrival is the only one that matters
+                        List<Reach> stopovers = earliest.values().stream()
+                                .filter(direct -> direct.arrival() <= latestArrival - this.minConnectionMinutes)
+                                .sorted(Comparator.comparingInt(Reach::arrival).thenComparing(Reach::destination))
+                                .limit(this.maxStopovers)
+                                .toList();
+                        return Flux.fromIterable(stopovers)
+                                .flatMap(first -> this.indexes(graph, first.destination(), months).map(indexes -> Map.entry(first, indexes)),
+                                        this.properties.scheduleFetchConcurrency())
+                                .doOnNext(stopover -> {
+                                    Reach first = stopover.getKey();
+                                    for (DepartureIndex index : stopover.getValue()) {
+                                        int latestDeparture = Math.min(latestArrival, first.arrival() + this.maxConnectionMinutes);
+                                        index.scan(first.arrival() + this.minConnectionMinutes, latestDeparture, (destination, legDeparture, legArrival) -> {
+                                            Reach current = earliest.get(destination);
+                                            if (legArrival <= latestArrival && !destination.equals(departure)
+                                                    && (current == null || legArrival < current.arrival())) {
+                                                earliest.put(destination, new Reach(departure, first.destination(), first.departure(), first.arrival(),
+                                                        destination, legDeparture, legArrival));
+                                            }
+                                        });
+                                    }
+                                })
+                                .then(Mono.just(earliest));
+                    });
+                })
+                .flatMapIterable(earliest -> earliest.values().stream()
+                        .sorted(Comparator.comparingInt(Reach::arrival).thenComparing(Reach::destination))
+                        .map(Reach::toDestination)
+                        .toList())
+                .switchIfEmpty(Flux.error(new NoSchedulesFoundException("No flights found from " + departure + " for requested dates")))
+                .name("departures.search")
+                .tag("max.stops", String.valueOf(stops))
+                .tap(Micrometer.observation(this.observationRegistry))
+                .contextWrite(FetchScheduler.request());
+    }
+
+    private Mono<List<DepartureIndex>> indexes(RouteGraph graph, String airport, List<YearMonth> months) {
+        // a build is shared and subscribed apart from the caller, so it runs with the caller's fetch priority
+        return Mono.deferContextual(context -> Flux.fromIterable(months)
+                .flatMapSequential(month -> Mono.defer(() -> {
+                    IndexKey key = new IndexKey(airport, month);
+                    CompletableFuture<Built> future = this.indexes.get(key,
+                            (missing, executor) -> this.build(graph, missing).contextWrite(FetchScheduler.scheduling(context)).toFuture());
+                    return Mono.fromFuture(future, true).map(built -> {
+                        // an index missing routes is served once and rebuilt by the next search
+                        if (!built.complete()) {
+                            this.indexes.asMap().remove(key, future);
+                        }
+                        return built.index();
+                    });
+                }))
+                .collectList());
+    }
+
+    /**
+     * Indexes the month of every route out of the airport. A route whose schedule cannot be fetched is left out and
+     * the index marked incomplete; the build only fails when no route could be fetched at all.
+     */
+    private Mono<Built> build(RouteGraph graph, IndexKey key) {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        return Flux.fromIterable(graph.destinationsFrom(key.airport()))
+                .flatMap(destination -> this.schedulesClient.getSchedule(key.airport(), destination, key.month().getYear(), key.month().getMonthValue())
+                                .map(timetable -> Map.entry(destination, timetable))
+                                .onErrorResume(error -> {
+                                    log.warn("Leaving {}-{} out of the {} departure index", key.airport(), destination, key.month(), error);
+                                    this.skippedRoutes.increment();
+                                    failure.set(error);
+                                    return Mono.empty();
+                                }),
+                        this.properties.scheduleFetchConcurrency())
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+                .flatMap(timetables -> timetables.isEmpty() && failure.get() != null
+                        ? Mono.error(failure.get())
+                        : Mono.just(new Built(DepartureIndex.of(key.month(), timetables), failure.get() == null)));
+    }
+
+    private record IndexKey(String airport, YearMonth month) {
+    }
+
+    private record Built(DepartureIndex index, boolean complete) {
+    }
+
+    /**
+     * Earliest way found to a destination: a direct flight, or a first leg to {@code stopover} and a connection.
+     */
+    private record Reach(String origin, String stopover, int firstDeparture, int firstArrival, String destination, int departure, int arrival) {
+
+        DestinationDTO toDestination() {
+            LegDTO last = new LegDTO(stopover == null ? origin : stopover, destination, Timetable.toDateTime(departure), Timetable.toDateTime(arrival));
+            if (stopover == null) {
+                return new DestinationDTO(destination, 0, last.arrivalDateTime(), List.of(last));
+            }
+            LegDTO first = new LegDTO(origin, stopover, Timetable.toDateTime(firstDeparture), Timetable.toDateTime(firstArrival));
+            return new DestinationDTO(destination, 1, last.arrivalDateTime(), List.of(first, last));
+        }
+    }
+}
@@ -1,154 +1,545 @@
 package com.ryanair.task.interconnected_flights.service;
 
 
-import com.ryanair.task.interconnected_flights.client.RoutesClient;
+import com.ryanair.task.interconnected_flights.client.FetchScheduler;
 import com.ryanair.task.interconnected_flights.client.SchedulesClient;
+import com.ryanair.task.interconnected_flights.config.FlightSearchProperties;
+import com.ryanair.task.interconnected_flights.dto.InterconnectionQueryDTO;
+import com.ryanair.task.interconnected_flights.dto.InterconnectionResultDTO;
 import com.ryanair.task.interconnected_flights.dto.LegDTO;
-import com.ryanair.task.interconnected_flights.dto.RouteDTO;
 import com.ryanair.task.interconnected_flights.dto.RouteWithNStopDTO;
+import com.ryanair.task.interconnected_flights.exception.GlobalExceptionHandler;
+import com.ryanair.task.interconnected_flights.exception.InvalidSearchException;
 import com.ryanair.task.interconnected_flights.exception.NoSchedulesFoundException;
 import com.ryanair.task.interconnected_flights.exception.RouteNotFoundException;
 import com.ryanair.task.interconnected_flights.model.FlightRoute;
+import com.ryanair.task.interconnected_flights.model.RouteGraph;
+import com.ryanair.task.interconnected_flights.model.ScheduleKey;
+import com.ryanair.task.interconnected_flights.model.Timetable;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
+import jakarta.annotation.PreDestroy;
 import org.springframework.stereotype.Service;
+import reactor.core.observability.micrometer.Micrometer;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
+import reactor.util.context.ContextView;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 @Service
 public class FlightService {
 
-    private final RoutesClient routesClient;
+    private final RouteGraphService routeGraphService;
     private final SchedulesClient schedulesClient;
+    private final FlightSearchProperties properties;
+    private final PrecomputedItineraryStore precomputedItineraries;
+    private final SearchResultCache resultCache;
+    private final ConnectionMatcher connectionMatcher;
+    private final ObservationRegistry observationRegistry;
+    private final DistributionSummary candidateRoutes;
+    private final DistributionSummary itineraries;
+    private final DistributionSummary partialItineraries;
+    private final Timer matching;
+    private final Scheduler virtualThreads;
+    private final ThreadFactory virtualThreadFactory;
+    private final String engine;
 
-    public FlightService(RoutesClient routesClient, SchedulesClient schedulesClient){
-        this.routesClient = routesClient;
+    public FlightService(RouteGraphService routeGraphService, SchedulesClient schedulesClient, FlightSearchProperties properties,
+                         PrecomputedItineraryStore precomputedItineraries, SearchResultCache resultCache,
+                         MeterRegistry meterRegistry, ObservationRegistry observationRegistry){
+        this.routeGraphService = routeGraphService;
         this.schedulesClient = schedulesClient;
+        this.properties = properties;
+        this.precomputedItineraries = precomputedItineraries;
+        this.resultCache = resultCache;
+        this.connectionMatcher = new ConnectionMatcher(properties.minConnectionTime(), properties.maxConnectionTime());
+        this.observationRegistry = observationRegistry;
+        this.candidateRoutes = DistributionSummary.builder("flights.search.candidates")
+                .description("Candidate routes evaluated per live search")
+                .register(meterRegistry);
+        this.itineraries = DistributionSummary.builder("flights.search.itineraries")
+                .description("Itineraries returned per search")
+                .register(meterRegistry);
+        this.partialItineraries = DistributionSummary.builder("flights.leg.partials")
+                .description("Partial itineraries a route carries out of each matched leg")
+                .register(meterRegistry);
+        this.matching = Timer.builder("flights.leg.matching")
+                .description("CPU time spent joining a leg's timetable onto the partial itineraries")
+                .register(meterRegistry);
+        this.virtualThreadFactory = Thread.ofVirtual().name("flight-search-", 0).factory();
+        // only the virtual-thread engine hands searches to a scheduler of its own
+        this.virtualThreads = properties.engine() == FlightSearchProperties.Engine.VIRTUAL_THREADS
+                ? Schedulers.fromExecutorService(Executors.newThreadPerTaskExecutor(this.virtualThreadFactory), "flight-search")
+                : null;
+        this.engine = properties.engine().name().toLowerCase(Locale.ROOT);
     }
 
-    public Flux<RouteWithNStopDTO> findFlights(String departure, String arrival, LocalDateTime departureDate, LocalDateTime arrivalDate){
+    @PreDestroy
+    public void close() {
+        if (this.virtualThreads != null) {
+            this.virtualThreads.dispose();
+        }
+    }
 
-        Flux<FlightRoute> routes = this.getFilteredRoutes(departure, arrival);
+    public Flux<RouteWithNStopDTO> findFlights(String departure, String arrival, LocalDateTime departureDate, LocalDateTime arrivalDate){
+        return this.findFlights(departure, arrival, departureDate, arrivalDate, this.properties.defaultMaxStops());
+    }
 
-        return this.validRoutes(routes, departureDate, arrivalDate);
+    public Flux<RouteWithNStopDTO> findFlights(String departure, String arrival, LocalDateTime departureDate, LocalDateTime arrivalDate, int maxStops){
+        return this.findFlights(departure, arrival, departureDate, arrivalDate, maxStops, null, null);
     }
 
-    private Flux<FlightRoute> getFilteredRoutes(String departure, String arrival) {
-        Flux<RouteDTO> ryanairRoutes = this.routesClient.getRoutes()
-                .filter(route -> route.connectingAirport() == null && route.operator().equals("RYANAIR"))
-                .subscribeOn(Schedulers.parallel());
+    /**
+     * Searches with optional ranking: given {@code sort} or {@code limit}, only the best {@code limit} itineraries
+     * in {@code sort} order (earliest arrival when only a limit is given) are returned, best first.
+     */
+    public Flux<RouteWithNStopDTO> findFlights(String departure, String arrival, LocalDateTime departureDate, LocalDateTime arrivalDate,
+                                               Integer maxStops, ItineraryOrder sort, Integer limit){
+        int stops = maxStops == null ? this.properties.defaultMaxStops() : maxStops;
+        if (stops < 0 || stops > this.properties.maxStopsLimit()) {
+            return Flux.error(new InvalidSearchException("maxStops must be between 0 and " + this.properties.maxStopsLimit()));
+        }
+        if (limit != null && limit < 1) {
+            return Flux.error(new InvalidSearchException("limit must be at least 1"));
+        }
+        if (Duration.between(departureDate, arrivalDate).compareTo(this.properties.maxSearchWindow()) > 0) {
+            return Flux.error(new InvalidSearchException("The search window may span at most " + this.properties.maxSearchWindow().toDays() + " days"));
+        }
+        ItineraryOrder order = sort == null && limit != null ? ItineraryOrder.EARLIEST_ARRIVAL : sort;
+        // every search is capped, an explicit limit can only lower the cap
+        int top = Math.min(limit == null ? Integer.MAX_VALUE : limit, this.properties.maxItineraries());
 
-        Flux<RouteDTO> directRoutesFromDeparture = ryanairRoutes
-                .filter(route -> route.airportFrom().equals(departure))
-                .subscribeOn(Schedulers.parallel());
+        return Flux.defer(() -> {
+            AtomicInteger found = new AtomicInteger();
+            Flux<RouteWithNStopDTO> precomputed = this.precomputedItineraries.find(departure, arrival, departureDate, arrivalDate, stops)
+                    .map(itineraries -> order == null ? itineraries : order.top(itineraries, top))
+                    .map(itineraries -> Flux.fromIterable(itineraries).take(top))
+                    .orElse(null);
+            Flux<RouteWithNStopDTO> search = precomputed != null
+                    ? precomputed.switchIfEmpty(Mono.error(new NoSchedulesFoundException("No schedules found for requested route and dates")))
+                    : this.resultCache.search(departure, arrival, departureDate, arrivalDate, stops, order, top,
+                            () -> this.findFlightsLive(departure, arrival, departureDate, arrivalDate, stops, order, top));
+            return search
+                    .doOnNext(itinerary -> found.incrementAndGet())
+                    .doOnComplete(() -> this.itineraries.record(found.get()))
+                    .name("flights.search")
+                    .tag("source", precomputed != null ? "precomputed" : "live")
+                    .tag("max.stops", String.valueOf(stops))
+                    .tag("sort", order == null ? "none" : order.parameterName())
+                    .tag("engine", this.engine)
+                    .tap(Micrometer.observation(this.observationRegistry))
+                    .contextWrite(FetchScheduler.request());
+        });
+    }
 
-        Flux<FlightRoute> directRoutes = directRoutesFromDeparture
-                .filter(route -> route.airportTo().equals(arrival))
-                .map(route -> new FlightRoute(List.of(route.airportFrom(), route.airportTo())))
-                .subscribeOn(Schedulers.parallel());
+    /**
+     * Runs the search against the route graph and the schedules, bypassing the precomputed itineraries, on the
+     * engine selected by {@code flights.engine}.
+     */
+    public Flux<RouteWithNStopDTO> findFlightsLive(String departure, String arrival, LocalDateTime departureDate, LocalDateTime arrivalDate, int maxStops){
+        return this.findFlightsLive(departure, arrival, departureDate, arrivalDate, maxStops, null, this.properties.maxItineraries());
+    }
 
-        Flux<String> intermediateAirports = directRoutesFromDeparture
-                .map(RouteDTO::airportTo)
-                .distinct()
-                .subscribeOn(Schedulers.parallel());
+    private Flux<RouteWithNStopDTO> findFlightsLive(String departure, String arrival, LocalDateTime departureDate, LocalDateTime arrivalDate,
+                                                    int maxStops, ItineraryOrder order, int limit){
+        Flux<RouteWithNStopDTO> search = switch (this.properties.engine()) {
+            case REACTIVE -> order == null
+                    ? this.validRoutes(this.getFilteredRoutes(departure, arrival, maxStops), departureDate, arrivalDate)
+                    : this.getFilteredRoutes(departure, arrival, maxStops)
+                            .collectList()
+                            .flatMap(routes -> this.rankReactive(this.rankedSearch(routes, order, limit, departureDate, arrivalDate), departureDate, arrivalDate))
+                            .flatMapIterable(itineraries -> itineraries)
+                            .switchIfEmpty(Mono.error(new NoSchedulesFoundException("No schedules found for requested route and dates")));
+            case VIRTUAL_THREADS -> Mono.deferContextual(context -> Mono.fromCallable(
+                            () -> this.searchBlocking(context, departure, arrival, departureDate, arrivalDate, maxStops, order, limit)))
+                    .subscribeOn(this.virtualThreads)
+                    .flatMapIterable(itineraries -> itineraries);
+        };
+        // an unranked search stops at the cap, cancelling the routes still being matched
+        return search.take(limit);
+    }
 
-        Flux<RouteDTO> routesToFinalDestination = intermediateAirports
-                .flatMap(intermediate -> ryanairRoutes
-                        .filter(route -> route.airportFrom().equals(intermediate) && route.airportTo().equals(arrival))
-                        .subscribeOn(Schedulers.parallel()))
-                .subscribeOn(Schedulers.parallel());
+    /**
+     * Evaluates several searches at once, emitting each query's result as soon as it completes. The first-leg month
+     * schedules of all queries are requested up front, each distinct month once, and every query starts as soon as
+     * its own first-leg months have landed, so queries whose schedules are ready do not wait for the rest. Later legs
+     * keep the live search's rule of only being fetched for months with connecting flights; overlapping queries share
+     * them through the schedules client, which coalesces concurrent fetches of the same month.
+     */
+    public Flux<InterconnectionResultDTO> findFlightsBatch(List<InterconnectionQueryDTO> queries) {
+        if (queries.size() > this.properties.batchMaxQueries()) {
+            return Flux.error(new InvalidSearchException("A batch may contain at most " + this.properties.batchMaxQueries() + " queries"));
+        }
+        for (InterconnectionQueryDTO query : queries) {
+            if (query.departure() == null || query.arrival() == null || query.departureDateTime() == null || query.arrivalDateTime() == null) {
+                return Flux.error(new InvalidSearchException("Every batch query requires departure, arrival, departureDateTime and arrivalDateTime"));
+            }
+        }
 
-        Flux<FlightRoute> routesWithOneStop = routesToFinalDestination.flatMap(finalRoute -> directRoutesFromDeparture
-                .filter(firstRoute -> firstRoute.airportTo().equals(finalRoute.airportFrom()))
-                .map(firstRoute -> new FlightRoute(List.of(firstRoute.airportFrom(), finalRoute.airportFrom(), finalRoute.airportTo())))
-                .subscribeOn(Schedulers.parallel()));
+        return this.routeGraphService.getGraph()
+                .map(graph -> this.firstLegFetches(graph, queries))
+                // without the graph nothing is prefetched, and every query reports the failure itself
+                .onErrorReturn(List.of())
+                .flatMapMany(firstLegs -> {
+                    Mono<Void> prefetch = Flux.fromIterable(firstLegs.stream().flatMap(List::stream).distinct().toList())
+                            .flatMap(fetch -> fetch, this.properties.batchConcurrency())
+                            .then();
+                    Flux<InterconnectionResultDTO> results = Flux.range(0, queries.size())
+                            .flatMap(index -> {
+                                InterconnectionQueryDTO query = queries.get(index);
+                                int maxStops = query.maxStops() == null ? this.properties.defaultMaxStops() : query.maxStops();
+                                List<Mono<Void>> firstLegMonths = firstLegs.isEmpty() ? List.of() : firstLegs.get(index);
+                                return Mono.when(firstLegMonths)
+                                        .then(this.findFlights(query.departure(), query.arrival(), query.departureDateTime(), query.arrivalDateTime(), maxStops)
+                                                .collectList())
+                                        .map(routes -> new InterconnectionResultDTO(index, query, routes, null))
+                                        .onErrorResume(error -> Mono.just(new InterconnectionResultDTO(index, query, List.of(),
+                                                GlobalExceptionHandler.clientMessage(error))));
+                            }, this.properties.batchConcurrency());
+                    return Flux.merge(prefetch.then(Mono.<InterconnectionResultDTO>empty()), results);
+                })
+                // the whole batch queues as one request, behind interactive searches
+                .contextWrite(FetchScheduler.request())
+                .contextWrite(FetchScheduler.withPriority(FetchScheduler.Priority.BATCH));
+    }
 
-        Flux<FlightRoute> allRoutes = directRoutes.mergeWith(routesWithOneStop);
+    /**
+     * For every query, the fetches of the first-leg month schedules of its candidate routes. Each distinct month is
+     * fetched once for the whole batch, and a failed fetch is left for the query's own search to report.
+     */
+    private List<List<Mono<Void>>> firstLegFetches(RouteGraph graph, List<InterconnectionQueryDTO> queries) {
+        Map<ScheduleKey, Mono<Void>> fetches = new HashMap<>();
+        List<List<Mono<Void>>> firstLegs = new ArrayList<>(queries.size());
+        for (InterconnectionQueryDTO query : queries) {
+            int maxStops = query.maxStops() == null ? this.properties.defaultMaxStops() : query.maxStops();
+            List<Mono<Void>> needed = new ArrayList<>();
+            // invalid, oversized or precomputed queries are answered without fetching anything
+            boolean searched = maxStops >= 0 && maxStops <= this.properties.maxStopsLimit()
+                    && Duration.between(query.departureDateTime(), query.arrivalDateTime()).compareTo(this.properties.maxSearchWindow()) <= 0
+                    && this.precomputedItineraries.find(query.departure(), query.arrival(), query.departureDateTime(), query.arrivalDateTime(), maxStops).isEmpty();
+            if (searched) {
+                for (FlightRoute route : graph.findRoutes(query.departure(), query.arrival(), maxStops)) {
+                    for (YearMonth month : months(query.departureDateTime(), query.arrivalDateTime())) {
+                        ScheduleKey key = new ScheduleKey(route.airport(0), route.airport(1), month.getYear(), month.getMonthValue());
+                        Mono<Void> fetch = fetches.computeIfAbsent(key, missing -> this.schedulesClient
+                                .getSchedule(missing.departure(), missing.arrival(), missing.year(), missing.month())
+                                .then()
+                                .onErrorResume(error -> Mono.empty())
+                                .cache());
+                        if (!needed.contains(fetch)) {
+                            needed.add(fetch);
+                        }
+                    }
+                }
+            }
+            firstLegs.add(needed);
+        }
+        return firstLegs;
+    }
+
+    private Flux<FlightRoute> getFilteredRoutes(String departure, String arrival, int maxStops) {
+        Flux<FlightRoute> allRoutes = this.routeGraphService.getGraph()
+                .map(graph -> {
+                    List<FlightRoute> routes = graph.findRoutes(departure, arrival, maxStops);
+                    this.candidateRoutes.record(routes.size());
+                    return routes;
+                })
+                .name("flights.routes.resolve")
+                .tap(Micrometer.observation(this.observationRegistry))
+                .flatMapIterable(routes -> routes);
 
         return allRoutes.switchIfEmpty(Mono.error(new RouteNotFoundException("No available routes from " + departure + " to " + arrival)));
     }
 
     private Flux<RouteWithNStopDTO> validRoutes(Flux<FlightRoute> routes, LocalDateTime departureDate, LocalDateTime arrivalDate) {
-        return routes.flatMap(route -> {
-                    List<String> airports = route.airports();
-
-                    if (airports.size() == 2) {
-                        return processDirectFlight(airports.get(0), airports.get(1), departureDate, arrivalDate)
-                                .collectList()
-                                .filter(legs -> !legs.isEmpty())
-                                .map(legs -> new RouteWithNStopDTO(0, legs))
-                                .flux();
-                    } else if (airports.size() == 3) {
-                        return processConnectingFlight(airports.get(0), airports.get(1), airports.get(2), departureDate, arrivalDate)
-                                .collectList()
-                                .filter(legs -> legs.size() == 2)
-                                .map(legs -> new RouteWithNStopDTO(1, legs))
-                                .flux();
-                    } else {
-                        return Flux.empty();
-                    }
-                }).collectList()
-                .filter(routesList -> !routesList.isEmpty())
-                .switchIfEmpty(Mono.error(new NoSchedulesFoundException("No schedules found for requested route and dates")))
-                .flatMapMany(Flux::fromIterable);
-    }
-
-    private Flux<LegDTO> processDirectFlight(String origin, String destination, LocalDateTime departureDate, LocalDateTime arrivalDate) {
-        return this.schedulesClient.getSchedule(origin, destination, departureDate.getYear(), departureDate.getMonthValue())
-                .flatMap(monthScheduleDTO -> Flux.fromIterable(monthScheduleDTO.days()))
-                .filter(day -> day.day() == departureDate.getDayOfMonth())
-                .flatMap(day -> Flux.fromIterable(day.flights()))
-                .filter(flight -> LocalTime.parse(flight.departureTime()).isAfter(departureDate.toLocalTime()))
-                .map(flight -> {
-                    LocalDateTime flightDepartureDateTime = LocalDateTime.of(departureDate.toLocalDate(), LocalTime.parse(flight.departureTime()));
-                    LocalDateTime flightArrivalDateTime = LocalDateTime.of(departureDate.toLocalDate(), LocalTime.parse(flight.arrivalTime()));
-                    if (flightArrivalDateTime.isBefore(flightDepartureDateTime)) {
-                        flightArrivalDateTime = flightArrivalDateTime.plusDays(1);
-                    }
-                    return new LegDTO(origin, destination, flightDepartureDateTime, flightArrivalDateTime);
-                })
-                .filter(leg -> !leg.arrivalDateTime().isAfter(arrivalDate));
-    }
-
-    private Flux<LegDTO> processConnectingFlight(String origin, String stopover, String destination, LocalDateTime departureDate, LocalDateTime arrivalDate) {
-        return this.schedulesClient.getSchedule(origin, stopover, departureDate.getYear(), departureDate.getMonthValue())
-                .flatMap(monthScheduleDTO -> Flux.fromIterable(monthScheduleDTO.days()))
-                .filter(day -> day.day() == departureDate.getDayOfMonth())
-                .flatMap(day -> Flux.fromIterable(day.flights()))
-                .filter(flight1 -> LocalTime.parse(flight1.departureTime()).isAfter(departureDate.toLocalTime()))
-                .flatMap(flight1 -> {
-                    LocalDateTime flight1DepartureDateTime = LocalDateTime.of(departureDate.toLocalDate(), LocalTime.parse(flight1.departureTime()));
-                    LocalDateTime flight1ArrivalDateTime = LocalDateTime.of(departureDate.toLocalDate(), LocalTime.parse(flight1.arrivalTime()));
-                    if (flight1ArrivalDateTime.isBefore(flight1DepartureDateTime)) {
-                        flight1ArrivalDateTime = flight1ArrivalDateTime.plusDays(1);
+        // itineraries are emitted as soon as their route resolves; only a search that completes empty is an error
+        return routes.flatMap(route -> processRoute(route, departureDate, arrivalDate))
+                .switchIfEmpty(Mono.error(new NoSchedulesFoundException("No schedules found for requested route and dates")));
+    }
+
+    /**
+     * Matches the schedules of a route leg by leg. Each leg's timetable is only fetched while some partial itinerary
+     * can still reach the destination in time, so infeasible routes are abandoned before their later legs are loaded.
+     */
+    private Flux<RouteWithNStopDTO> processRoute(FlightRoute route, LocalDateTime departureDate, LocalDateTime arrivalDate) {
+        Timetable[] timetables = new Timetable[route.airportCount() - 1];
+        return this.extendItineraries(route, 0, timetables, List.of(new int[0]), departureDate, arrivalDate)
+                .flatMapIterable(itineraries -> itineraries)
+                .map(flights -> toItinerary(route, timetables, flights))
+                .name("flights.route.process")
+                .tag("stops", String.valueOf(route.airportCount() - 2))
+                .tap(Micrometer.observation(this.observationRegistry));
+    }
+
+    private Mono<List<int[]>> extendItineraries(FlightRoute route, int leg, Timetable[] timetables, List<int[]> partials,
+                                                LocalDateTime departureDate, LocalDateTime arrivalDate) {
+        if (partials.isEmpty() || leg == timetables.length) {
+            return Mono.just(partials);
+        }
+
+        int latestLegArrival = this.latestLegArrival(leg, timetables.length, arrivalDate);
+
+        return this.observedTimeline(route.airport(leg), route.airport(leg + 1), leg, departureDate, arrivalDate)
+                .flatMap(timetable -> {
+                    timetables[leg] = timetable;
+                    List<int[]> extended = this.matchLeg(timetables, leg, partials, departureDate, latestLegArrival);
+                    return this.extendItineraries(route, leg + 1, timetables, extended, departureDate, arrivalDate);
+                });
+    }
+
+    private RankedSearch rankedSearch(List<FlightRoute> routes, ItineraryOrder order, int limit, LocalDateTime departureDate, LocalDateTime arrivalDate) {
+        return new RankedSearch(routes, order, limit, Timetable.toEpochMinute(departureDate) + 1, this.connectionMatcher.minConnectionMinutes(),
+                (timetables, leg, partials) -> this.matchLeg(timetables, leg, partials, departureDate, this.latestLegArrival(leg, timetables.length, arrivalDate)));
+    }
+
+    /**
+     * Drives a {@link RankedSearch} wave by wave, loading the next leg of up to {@code flights.schedule-fetch-concurrency}
+     * routes at a time, until no remaining route can improve on the best itineraries.
+     */
+    private Mono<List<RouteWithNStopDTO>> rankReactive(RankedSearch search, LocalDateTime departureDate, LocalDateTime arrivalDate) {
+        List<RankedSearch.Candidate> wave = search.nextWave(this.properties.scheduleFetchConcurrency());
+        if (wave.isEmpty()) {
+            return Mono.fromSupplier(() -> search.results().stream()
+                    .map(ranked -> toItinerary(ranked.route(), ranked.timetables(), ranked.flights()))
+                    .toList());
+        }
+        // legs are matched as their timetables arrive, one at a time, since the search is not thread-safe
+        return Flux.fromIterable(wave)
+                .flatMap(candidate -> this.observedTimeline(candidate.origin(), candidate.destination(), candidate.leg(), departureDate, arrivalDate)
+                        .map(timetable -> Map.entry(candidate, timetable)))
+                .doOnNext(loaded -> search.advance(loaded.getKey(), loaded.getValue()))
+                .then(Mono.defer(() -> this.rankReactive(search, departureDate, arrivalDate)));
+    }
+
+    /**
+     * Extends every partial itinerary with the flights of {@code timetables[leg]} it can connect to and that land no
+     * later than {@code latestLegArrival}; on the first leg, every flight departing after {@code departureDate} starts one.
+     * Since each stopover multiplies the partial itineraries, a route exceeding {@code flights.max-partial-itineraries}
+     * fails the search instead of exhausting the heap.
+     */
+    private List<int[]> matchLeg(Timetable[] timetables, int leg, List<int[]> partials, LocalDateTime departureDate, int latestLegArrival) {
+        long matchStart = System.nanoTime();
+        Timetable timetable = timetables[leg];
+        List<int[]> extended = new ArrayList<>();
+        if (leg == 0) {
+            int earliestDeparture = Timetable.toEpochMinute(departureDate) + 1;
+            for (int i = timetable.firstDepartureAtOrAfter(earliestDeparture); i < timetable.size() && timetable.departure(i) <= latestLegArrival; i++) {
+                if (timetable.arrival(i) <= latestLegArrival) {
+                    extended.add(new int[]{i});
+                }
+            }
+        } else {
+            Timetable previous = timetables[leg - 1];
+            int maxPartials = this.properties.maxPartialItineraries();
+            for (int[] partial : partials) {
+                this.connectionMatcher.connectionsFrom(previous.arrival(partial[leg - 1]), timetable, latestLegArrival, next -> {
+                    if (extended.size() == maxPartials) {
+                        throw new InvalidSearchException("The search matches more than " + maxPartials
+                                + " itineraries on a single route, narrow the dates or lower maxStops");
                     }
-                    LocalDateTime finalFlight1ArrivalDateTime = flight1ArrivalDateTime;
-                    LocalDateTime finalFlight1ArrivalDateTime1 = flight1ArrivalDateTime;
-                    return this.schedulesClient.getSchedule(stopover, destination, departureDate.getYear(), departureDate.getMonthValue())
-                            .flatMap(monthScheduleDTO -> Flux.fromIterable(monthScheduleDTO.days()))
-                            .filter(day -> day.day() == departureDate.getDayOfMonth())
-                            .flatMap(day -> Flux.fromIterable(day.flights()))
-                            .filter(flight2 -> LocalTime.parse(flight2.departureTime()).isAfter(LocalTime.parse(flight1.arrivalTime())))
-                            .map(flight2 -> {
-                                LocalDateTime flight2DepartureDateTime = LocalDateTime.of(departureDate.toLocalDate(), LocalTime.parse(flight2.departureTime()));
-                                LocalDateTime flight2ArrivalDateTime = LocalDateTime.of(departureDate.toLocalDate(), LocalTime.parse(flight2.arrivalTime()));
-                                if (flight2ArrivalDateTime.isBefore(flight2DepartureDateTime)) {
-                                    flight2ArrivalDateTime = flight2ArrivalDateTime.plusDays(1);
-                                }
-                                return new LegDTO(stopover, destination, flight2DepartureDateTime, flight2ArrivalDateTime);
-                            })
-                            .filter(leg -> !leg.arrivalDateTime().isAfter(arrivalDate))
-                            .filter(leg -> Duration.between(finalFlight1ArrivalDateTime.toLocalTime(), leg.departureDateTime().toLocalTime()).toHours() >= 2)
-                            .flatMap(leg -> Flux.just(
-                                    new LegDTO(origin, stopover, flight1DepartureDateTime, finalFlight1ArrivalDateTime1),
-                                    new LegDTO(stopover, destination, leg.departureDateTime(), leg.arrivalDateTime())
-                            ));
+                    int[] flights = Arrays.copyOf(partial, leg + 1);
+                    flights[leg] = next;
+                    extended.add(flights);
                 });
+            }
+        }
+        this.matching.record(System.nanoTime() - matchStart, TimeUnit.NANOSECONDS);
+        this.partialItineraries.record(extended.size());
+        return extended;
+    }
+
+    private int latestLegArrival(int leg, int legs, LocalDateTime arrivalDate) {
+        int latestArrival = Timetable.toEpochMinute(arrivalDate);
+        // an intermediate leg must land early enough to still make a connection
+        return leg == legs - 1 ? latestArrival : latestArrival - this.connectionMatcher.minConnectionMinutes();
+    }
+
+    private Mono<Timetable> observedTimeline(String origin, String destination, int leg, LocalDateTime departureDate, LocalDateTime arrivalDate) {
+        return this.getTimeline(origin, destination, departureDate, arrivalDate)
+                .name("flights.leg.timeline")
+                .tag("leg", String.valueOf(leg))
+                .tap(Micrometer.observation(this.observationRegistry));
+    }
+
+    /**
+     * Fetches every month of the route touched by the search window concurrently and merges them into one timeline.
+     */
+    private Mono<Timetable> getTimeline(String origin, String destination, LocalDateTime departureDate, LocalDateTime arrivalDate) {
+        return Flux.fromIterable(months(departureDate, arrivalDate))
+                .flatMapSequential(month -> SearchResultCache.dependsOn(new ScheduleKey(origin, destination, month.getYear(), month.getMonthValue()),
+                                this.schedulesClient.getSchedule(origin, destination, month.getYear(), month.getMonthValue())),
+                        this.properties.scheduleFetchConcurrency())
+                .collectList()
+                .map(Timetable::merge);
+    }
+
+    /**
+     * The live search as plain blocking code. Every candidate route runs on its own virtual thread, which loads each
+     * leg with one virtual thread per month and matches it in place. All threads of a search belong to one executor
+     * that is closed before the search returns; the first failure, or the subscriber cancelling, interrupts the rest.
+     * Upstream calls still go through the reactive clients, carrying the caller's Reactor context. With an
+     * {@code order}, routes are advanced best-first instead, see {@link RankedSearch}.
+     */
+    private List<RouteWithNStopDTO> searchBlocking(ContextView context, String departure, String arrival, LocalDateTime departureDate,
+                                                   LocalDateTime arrivalDate, int maxStops, ItineraryOrder order, int limit) {
+        RouteGraph graph = this.routeGraphService.getGraph().contextWrite(context).block();
+        List<FlightRoute> routes = graph == null ? List.of() : graph.findRoutes(departure, arrival, maxStops);
+        this.candidateRoutes.record(routes.size());
+        if (routes.isEmpty()) {
+            throw new RouteNotFoundException("No available routes from " + departure + " to " + arrival);
+        }
+
+        Observation parent = context.getOrDefault(ObservationThreadLocalAccessor.KEY, null);
+        List<YearMonth> months = months(departureDate, arrivalDate);
+        List<RouteWithNStopDTO> itineraries;
+        try (ExecutorService search = Executors.newThreadPerTaskExecutor(this.virtualThreadFactory)) {
+            itineraries = order == null
+                    ? this.processRoutesBlocking(search, context, parent, routes, months, departureDate, arrivalDate)
+                    : this.rankBlocking(search, context, parent, this.rankedSearch(routes, order, limit, departureDate, arrivalDate), months);
+        }
+        if (itineraries.isEmpty()) {
+            throw new NoSchedulesFoundException("No schedules found for requested route and dates");
+        }
+        return itineraries;
+    }
+
+    private List<RouteWithNStopDTO> processRoutesBlocking(ExecutorService search, ContextView context, Observation parent, List<FlightRoute> routes,
+                                                          List<YearMonth> months, LocalDateTime departureDate, LocalDateTime arrivalDate) {
+        List<Future<List<RouteWithNStopDTO>>> results = new ArrayList<>(routes.size());
+        for (FlightRoute route : routes) {
+            Observation observation = Observation.createNotStarted("flights.route.process", this.observationRegistry)
+                    .parentObservation(parent)
+                    .lowCardinalityKeyValue("stops", String.valueOf(route.airportCount() - 2));
+            results.add(search.submit(() -> observation.observe(
+                    () -> this.processRouteBlocking(search, context, observation, route, months, departureDate, arrivalDate))));
+        }
+        List<RouteWithNStopDTO> itineraries = new ArrayList<>();
+        for (Future<List<RouteWithNStopDTO>> result : results) {
+            itineraries.addAll(join(search, result));
+        }
+        return itineraries;
+    }
+
+    private List<RouteWithNStopDTO> processRouteBlocking(ExecutorService search, ContextView context, Observation parent, FlightRoute route,
+                                                         List<YearMonth> months, LocalDateTime departureDate, LocalDateTime arrivalDate) {
+        Timetable[] timetables = new Timetable[route.airportCount() - 1];
+        List<int[]> partials = List.of(new int[0]);
+        // later legs are only loaded while some partial itinerary can still reach the destination in time
+        for (int leg = 0; leg < timetables.length && !partials.isEmpty(); leg++) {
+            timetables[leg] = this.observedTimelineBlocking(search, context, parent, route.airport(leg), route.airport(leg + 1), leg, months);
+            partials = this.matchLeg(timetables, leg, partials, departureDate, this.latestLegArrival(leg, timetables.length, arrivalDate));
+        }
+
+        List<RouteWithNStopDTO> itineraries = new ArrayList<>(partials.size());
+        for (int[] flights : partials) {
+            itineraries.add(toItinerary(route, timetables, flights));
+        }
+        return itineraries;
+    }
+
+    /**
+     * Drives a {@link RankedSearch} like {@link #rankReactive}, loading each wave on one virtual thread per route.
+     */
+    private List<RouteWithNStopDTO> rankBlocking(ExecutorService search, ContextView context, Observation parent, RankedSearch ranking, List<YearMonth> months) {
+        List<RankedSearch.Candidate> wave;
+        while (!(wave = ranking.nextWave(this.properties.scheduleFetchConcurrency())).isEmpty()) {
+            List<Future<Timetable>> loads = new ArrayList<>(wave.size());
+            for (RankedSearch.Candidate candidate : wave) {
+                loads.add(search.submit(() -> this.observedTimelineBlocking(search, context, parent, candidate.origin(), candidate.destination(), candidate.leg(), months)));
+            }
+            for (int i = 0; i < wave.size(); i++) {
+                ranking.advance(wave.get(i), join(search, loads.get(i)));
+            }
+        }
+        return ranking.results().stream()
+                .map(ranked -> toItinerary(ranked.route(), ranked.timetables(), ranked.flights()))
+                .toList();
+    }
+
+    private Timetable observedTimelineBlocking(ExecutorService search, ContextView context, Observation parent,
+                                               String origin, String destination, int leg, List<YearMonth> months) {
+        return Observation.createNotStarted("flights.leg.timeline", this.observationRegistry)
+                .parentObservation(parent)
+                .lowCardinalityKeyValue("leg", String.valueOf(leg))
+                .observe(() -> this.getTimelineBlocking(search, context, origin, destination, months));
+    }
+
+    private Timetable getTimelineBlocking(ExecutorService search, ContextView context, String origin, String destination, List<YearMonth> months) {
+        List<Future<Timetable>> fetches = new ArrayList<>(months.size());
+        for (YearMonth month : months) {
+            ScheduleKey key = new ScheduleKey(origin, destination, month.getYear(), month.getMonthValue());
+            fetches.add(search.submit(() -> SearchResultCache.dependsOn(key, this.schedulesClient.getSchedule(origin, destination, key.year(), key.month()))
+                    .contextWrite(context)
+                    .block()));
+        }
+        List<Timetable> timetables = new ArrayList<>(fetches.size());
+        for (Future<Timetable> fetch : fetches) {
+            Timetable timetable = join(search, fetch);
+            if (timetable != null) {
+                timetables.add(timetable);
+            }
+        }
+        return Timetable.merge(timetables);
+    }
+
+    /**
+     * Waits for a task of {@code search}, shutting the whole search down if it failed or the wait was interrupted.
+     */
+    private static <T> T join(ExecutorService search, Future<T> task) {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            search.shutdownNow();
+            throw e.getCause() instanceof RuntimeException failure ? failure : new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            search.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Search interrupted");
+        }
+    }
+
+    private static List<YearMonth> months(LocalDateTime departureDate, LocalDateTime arrivalDate) {
+        List<YearMonth> months = new ArrayList<>();
+        for (YearMonth month = YearMonth.from(departureDate); !month.isAfter(YearMonth.from(arrivalDate)); month = month.plusMonths(1)) {
+            months.add(month);
+        }
+        return months;
+    }
+
+    private static RouteWithNStopDTO toItinerary(FlightRoute route, Timetable[] timetables, int[] flights) {
+        List<LegDTO> legs = new ArrayList<>(flights.length);
+        for (int leg = 0; leg < flights.length; leg++) {
+            legs.add(toLeg(route.airport(leg), route.airport(leg + 1), timetables[leg], flights[leg]));
+        }
+        return new RouteWithNStopDTO(route.airportCount() - 2, legs);
+    }
+
+    private static LegDTO toLeg(String origin, String destination, Timetable timetable, int index) {
+        return new LegDTO(origin, destination, Timetable.toDateTime(timetable.departure(index)), Timetable.toDateTime(timetable.arrival(index)));
     }
 
 }
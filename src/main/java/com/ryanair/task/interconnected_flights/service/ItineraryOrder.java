@@ -0,0 +1,95 @@
+package com.ryanair.task.interconnected_flights.service;
+
+import com.ryanair.task.interconnected_flights.dto.LegDTO;
+import com.ryanair.task.interconnected_flights.dto.RouteWithNStopDTO;
+import com.ryanair.task.interconnected_flights.exception.InvalidSearchException;
+import com.ryanair.task.interconnected_flights.model.Timetable;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Orders in which a search can rank its itineraries. Each order reduces an itinerary to a score where lower is better;
+ * the score grows with the last arrival once the first departure and the stops are fixed, so the score of a partial
+ * itinerary with its remaining legs taken at their earliest possible arrival bounds every completion of it.
+ */
+public enum ItineraryOrder {
+
+    EARLIEST_ARRIVAL {
+        @Override
+        long score(int stops, int departure, int arrival) {
+            return arrival;
+        }
+    },
+    SHORTEST_DURATION {
+        @Override
+        long score(int stops, int departure, int arrival) {
+            return arrival - departure;
+        }
+    },
+    FEWEST_STOPS {
+        @Override
+        long score(int stops, int departure, int arrival) {
+            // stops first, then earliest arrival
+            return ((long) stops << 32) | arrival;
+        }
+    };
+
+    /**
+     * Score of an itinerary with {@code stops} stops, leaving at {@code departure} and landing at {@code arrival},
+     * both in epoch minutes.
+     */
+    abstract long score(int stops, int departure, int arrival);
+
+    /**
+     * Compares two itineraries by score, then by stops and first departure so ties are broken the same way everywhere.
+     */
+    int compare(int stops, int departure, int arrival, int otherStops, int otherDeparture, int otherArrival) {
+        int byScore = Long.compare(this.score(stops, departure, arrival), this.score(otherStops, otherDeparture, otherArrival));
+        if (byScore != 0) {
+            return byScore;
+        }
+        int byStops = Integer.compare(stops, otherStops);
+        return byStops != 0 ? byStops : Integer.compare(departure, otherDeparture);
+    }
+
+    /**
+     * The first {@code limit} of {@code itineraries} in this order.
+     */
+    List<RouteWithNStopDTO> top(List<RouteWithNStopDTO> itineraries, int limit) {
+        Comparator<RouteWithNStopDTO> comparator = (a, b) -> this.compare(a.stops(), departure(a), arrival(a), b.stops(), departure(b), arrival(b));
+        return itineraries.stream().sorted(comparator).limit(limit).toList();
+    }
+
+    /**
+     * Name of this order as accepted by {@link #parse}, e.g. {@code earliest-arrival}.
+     */
+    public String parameterName() {
+        return this.name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+
+    /**
+     * Reads the {@code sort} request parameter; {@code null} means unsorted.
+     */
+    public static ItineraryOrder parse(String sort) {
+        if (sort == null) {
+            return null;
+        }
+        for (ItineraryOrder order : values()) {
+            if (order.parameterName().equalsIgnoreCase(sort.trim().replace('_', '-'))) {
+                return order;
+            }
+        }
+        throw new InvalidSearchException("sort must be one of earliest-arrival, shortest-duration or fewest-stops");
+    }
+
+    private static int departure(RouteWithNStopDTO itinerary) {
+        return Timetable.toEpochMinute(itinerary.legs().get(0).departureDateTime());
+    }
+
+    private static int arrival(RouteWithNStopDTO itinerary) {
+        List<LegDTO> legs = itinerary.legs();
+        return Timetable.toEpochMinute(legs.get(legs.size() - 1).arrivalDateTime());
+    }
+}
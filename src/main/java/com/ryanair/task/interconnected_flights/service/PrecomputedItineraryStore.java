@@ -0,0 +1,100 @@
+package com.ryanair.task.interconnected_flights.service;
+
+import com.ryanair.task.interconnected_flights.dto.RouteWithNStopDTO;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Direct and one-stop itineraries precomputed for hot airport pairs, indexed by (pair, departure date) and sorted
+ * by departure. Each day covers itineraries departing that day and landing within {@link #DAY_COVERAGE_DAYS} days
+ * of its start, so a query can be answered from the store when its window ends within that horizon.
+ */
+@Component
+public class PrecomputedItineraryStore {
+
+    static final int DAY_COVERAGE_DAYS = 2;
+
+    private static final Comparator<RouteWithNStopDTO> BY_DEPARTURE =
+            Comparator.comparing(itinerary -> itinerary.legs().get(0).departureDateTime());
+
+    private final ConcurrentMap<String, ConcurrentNavigableMap<LocalDate, Day>> days = new ConcurrentHashMap<>();
+
+    public OptionalLong fingerprint(String departure, String arrival, LocalDate date) {
+        ConcurrentNavigableMap<LocalDate, Day> pairDays = this.days.get(key(departure, arrival));
+        Day day = pairDays == null ? null : pairDays.get(date);
+        return day == null ? OptionalLong.empty() : OptionalLong.of(day.fingerprint());
+    }
+
+    public void put(String departure, String arrival, LocalDate date, long fingerprint, List<RouteWithNStopDTO> itineraries) {
+        List<RouteWithNStopDTO> sorted = new ArrayList<>(itineraries);
+        sorted.sort(BY_DEPARTURE);
+        this.days.computeIfAbsent(key(departure, arrival), pair -> new ConcurrentSkipListMap<>())
+                .put(date, new Day(fingerprint, List.copyOf(sorted)));
+    }
+
+    public void evictBefore(LocalDate date) {
+        this.days.values().forEach(pairDays -> pairDays.headMap(date).clear());
+    }
+
+    /**
+     * Answers a search with a range scan over the precomputed days, or returns empty when the pair, any day of the
+     * window or the requested number of stops is not covered and the live search has to be used instead.
+     */
+    public Optional<List<RouteWithNStopDTO>> find(String departure, String arrival, LocalDateTime departureDate, LocalDateTime arrivalDate, int maxStops) {
+        ConcurrentNavigableMap<LocalDate, Day> pairDays = this.days.get(key(departure, arrival));
+        if (pairDays == null || maxStops > 1
+                || arrivalDate.isAfter(departureDate.toLocalDate().plusDays(DAY_COVERAGE_DAYS).atStartOfDay())) {
+            return Optional.empty();
+        }
+
+        List<RouteWithNStopDTO> itineraries = new ArrayList<>();
+        for (LocalDate date = departureDate.toLocalDate(); !date.isAfter(arrivalDate.toLocalDate()); date = date.plusDays(1)) {
+            Day day = pairDays.get(date);
+            if (day == null) {
+                return Optional.empty();
+            }
+            for (int i = day.firstDepartingAfter(departureDate); i < day.itineraries().size(); i++) {
+                RouteWithNStopDTO itinerary = day.itineraries().get(i);
+                if (itinerary.legs().get(0).departureDateTime().isAfter(arrivalDate)) {
+                    break;
+                }
+                if (itinerary.stops() <= maxStops && !itinerary.legs().get(itinerary.legs().size() - 1).arrivalDateTime().isAfter(arrivalDate)) {
+                    itineraries.add(itinerary);
+                }
+            }
+        }
+        return Optional.of(itineraries);
+    }
+
+    private static String key(String departure, String arrival) {
+        return departure + "-" + arrival;
+    }
+
+    private record Day(long fingerprint, List<RouteWithNStopDTO> itineraries) {
+
+        private int firstDepartingAfter(LocalDateTime departureDate) {
+            int low = 0;
+            int high = itineraries.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (itineraries.get(mid).legs().get(0).departureDateTime().isAfter(departureDate)) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.ryanair.task.interconnected_flights.service;
+
+import com.ryanair.task.interconnected_flights.model.FlightRoute;
+import com.ryanair.task.interconnected_flights.model.Timetable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Best-first evaluation of a search that only wants the best {@code limit} itineraries in some {@link ItineraryOrder}.
+ * <p>
+ * Every candidate route starts with a lower bound on the score of any itinerary it can produce: its first flight
+ * leaves right after the requested departure and every stop takes exactly the minimum connection time. Routes are
+ * advanced one leg at a time, lowest bound first, and each loaded leg tightens the bound of its route. The best
+ * complete itineraries are kept in a bounded heap, and as soon as it is full no route or partial itinerary whose
+ * bound is worse than its last entry is advanced any further, so their remaining schedules are never fetched.
+ * <p>
+ * The search itself does no I/O: the caller repeatedly takes a {@link #nextWave wave} of routes, loads the next leg
+ * of each, reports it through {@link #advance} and stops once a wave comes back empty. Not thread-safe.
+ */
+final class RankedSearch {
+
+    private final ItineraryOrder order;
+    private final int limit;
+    private final int minConnectionMinutes;
+    private final LegMatcher matcher;
+    private final PriorityQueue<Candidate> frontier = new PriorityQueue<>(Comparator.comparingLong(Candidate::bound));
+    // worst of the best itineraries so far at the head
+    private final PriorityQueue<Ranked> best;
+
+    RankedSearch(List<FlightRoute> routes, ItineraryOrder order, int limit, int earliestDeparture, int minConnectionMinutes, LegMatcher matcher) {
+        this.order = order;
+        this.limit = limit;
+        this.minConnectionMinutes = minConnectionMinutes;
+        this.matcher = matcher;
+        this.best = new PriorityQueue<>(Math.min(limit, 64), (a, b) -> this.compare(b, a));
+        for (FlightRoute route : routes) {
+            int stops = route.airportCount() - 2;
+            long bound = order.score(stops, earliestDeparture, earliestDeparture + stops * minConnectionMinutes);
+            this.frontier.add(new Candidate(route, new Timetable[route.airportCount() - 1], List.of(new int[0]), bound));
+        }
+    }
+
+    /**
+     * Removes up to {@code width} routes that can still improve on the best itineraries, lowest bound first.
+     * An empty wave means the search is complete.
+     */
+    List<Candidate> nextWave(int width) {
+        List<Candidate> wave = new ArrayList<>(Math.min(width, this.frontier.size()));
+        while (wave.size() < width && !this.frontier.isEmpty() && this.canImprove(this.frontier.peek().bound)) {
+            wave.add(this.frontier.poll());
+        }
+        return wave;
+    }
+
+    /**
+     * Matches the next leg of {@code candidate} on {@code timetable}. Completed itineraries are offered to the best
+     * ones; partial itineraries that can still improve on them put the route back into the frontier.
+     */
+    void advance(Candidate candidate, Timetable timetable) {
+        int leg = candidate.leg();
+        candidate.timetables[leg] = timetable;
+        List<int[]> extended = this.matcher.match(candidate.timetables, leg, candidate.partials);
+        int stops = candidate.route.airportCount() - 2;
+        int remainingLegs = candidate.timetables.length - leg - 1;
+
+        if (remainingLegs == 0) {
+            for (int[] flights : extended) {
+                this.offer(new Ranked(candidate.route, candidate.timetables, flights));
+            }
+            return;
+        }
+
+        List<int[]> promising = new ArrayList<>(extended.size());
+        long bound = Long.MAX_VALUE;
+        for (int[] partial : extended) {
+            long partialBound = this.order.score(stops, candidate.timetables[0].departure(partial[0]),
+                    candidate.timetables[leg].arrival(partial[leg]) + remainingLegs * this.minConnectionMinutes);
+            if (this.canImprove(partialBound)) {
+                promising.add(partial);
+                bound = Math.min(bound, partialBound);
+            }
+        }
+        if (!promising.isEmpty()) {
+            this.frontier.add(new Candidate(candidate.route, candidate.timetables, promising, bound));
+        }
+    }
+
+    /**
+     * The best itineraries found, best first.
+     */
+    List<Ranked> results() {
+        List<Ranked> results = new ArrayList<>(this.best);
+        results.sort(this::compare);
+        return results;
+    }
+
+    private boolean canImprove(long bound) {
+        // equal scores may still win on the tie-breakers
+        return this.best.size() < this.limit || bound <= this.best.peek().score(this.order);
+    }
+
+    private void offer(Ranked ranked) {
+        if (this.best.size() < this.limit) {
+            this.best.add(ranked);
+        } else if (this.compare(ranked, this.best.peek()) < 0) {
+            this.best.poll();
+            this.best.add(ranked);
+        }
+    }
+
+    private int compare(Ranked a, Ranked b) {
+        return this.order.compare(a.stops(), a.departure(), a.arrival(), b.stops(), b.departure(), b.arrival());
+    }
+
+    /**
+     * Joins the flights of {@code timetables[leg]} onto the partial itineraries, dropping those that cannot connect.
+     */
+    @FunctionalInterface
+    interface LegMatcher {
+        List<int[]> match(Timetable[] timetables, int leg, List<int[]> partials);
+    }
+
+    /**
+     * A route whose legs before {@link #leg()} are loaded and matched into {@code partials}.
+     */
+    record Candidate(FlightRoute route, Timetable[] timetables, List<int[]> partials, long bound) {
+
+        int leg() {
+            return partials.get(0).length;
+        }
+
+        String origin() {
+            return route.airport(leg());
+        }
+
+        String destination() {
+            return route.airport(leg() + 1);
+        }
+    }
+
+    /**
+     * A complete itinerary: one flight index per leg of {@code route}.
+     */
+    record Ranked(FlightRoute route, Timetable[] timetables, int[] flights) {
+
+        int stops() {
+            return route.airportCount() - 2;
+        }
+
+        int departure() {
+            return timetables[0].departure(flights[0]);
+        }
+
+        int arrival() {
+            return timetables[timetables.length - 1].arrival(flights[flights.length - 1]);
+        }
+
+        long score(ItineraryOrder order) {
+            return order.score(this.stops(), this.departure(), this.arrival());
+        }
+    }
+}
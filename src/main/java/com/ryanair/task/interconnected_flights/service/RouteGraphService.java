@@ -0,0 +1,74 @@
+package com.ryanair.task.interconnected_flights.service;
+
+import com.ryanair.task.interconnected_flights.client.RoutesClient;
+import com.ryanair.task.interconnected_flights.model.RouteGraph;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps the route network resident in memory so searches never hit the /routes API on the hot path.
+ * The graph is loaded lazily on first use and then rebuilt in the background, swapping the snapshot atomically.
+ */
+@Service
+public class RouteGraphService {
+
+    private static final Logger log = LoggerFactory.getLogger(RouteGraphService.class);
+
+    private final RoutesClient routesClient;
+    private final AtomicReference<RouteGraph> graph = new AtomicReference<>();
+    private final Mono<RouteGraph> initialLoad;
+
+    public RouteGraphService(RoutesClient routesClient, MeterRegistry meterRegistry) {
+        this.routesClient = routesClient;
+        this.initialLoad = Mono.defer(this::refresh)
+                .cache(loaded -> Duration.ofMillis(Long.MAX_VALUE), error -> Duration.ZERO, () -> Duration.ZERO);
+        Gauge.builder("routes.graph.age", this.graph, current -> current.get() == null
+                        ? Double.NaN
+                        : Duration.between(current.get().loadedAt(), Instant.now()).toSeconds())
+                .description("Seconds since the route graph was last refreshed successfully")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    public Mono<RouteGraph> getGraph() {
+        RouteGraph current = this.graph.get();
+        return current != null ? Mono.just(current) : this.initialLoad;
+    }
+
+    /**
+     * Installs a previously persisted graph unless a fresher one was already loaded; the scheduled refresh
+     * reconciles it with the upstream afterwards.
+     */
+    public void restore(RouteGraph restored) {
+        this.graph.compareAndSet(null, restored);
+    }
+
+    public RouteGraph currentGraph() {
+        return this.graph.get();
+    }
+
+    public Mono<RouteGraph> refresh() {
+        // connecting and non-Ryanair routes are already dropped while decoding the route list
+        return this.routesClient.getRoutes()
+                .collect(RouteGraph::builder, (builder, route) -> builder.addRoute(route.origin(), route.destination()))
+                .map(RouteGraph.Builder::build)
+                .doOnNext(this.graph::set);
+    }
+
+    @Scheduled(fixedDelayString = "${routes.refresh-interval:PT30M}")
+    public void scheduledRefresh() {
+        Mono<RouteGraph> load = this.graph.get() == null ? this.initialLoad : this.refresh();
+        load.subscribe(
+                loaded -> log.info("Route graph refreshed with {} routes", loaded.routeCount()),
+                error -> log.warn("Route graph refresh failed, keeping previous snapshot", error));
+    }
+}
@@ -0,0 +1,225 @@
+package com.ryanair.task.interconnected_flights.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.ryanair.task.interconnected_flights.client.FetchScheduler;
+import com.ryanair.task.interconnected_flights.client.SchedulesClient;
+import com.ryanair.task.interconnected_flights.dto.RouteWithNStopDTO;
+import com.ryanair.task.interconnected_flights.exception.NoSchedulesFoundException;
+import com.ryanair.task.interconnected_flights.model.ScheduleKey;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caches complete search results by normalized query. Concurrent identical searches share one computation, whose
+ * itineraries are streamed to every caller as they are found rather than once the search completes, and
+ * every result remembers the month schedules it was computed from, so it is dropped as soon as a background
+ * refresh finds one of them changed. Results also expire after {@code search.cache.ttl}, which bounds how long a
+ * route network change can go unnoticed.
+ */
+@Component
+public class SearchResultCache {
+
+    private static final String DEPENDENCIES = SearchResultCache.class.getName() + ".dependencies";
+
+    // rough retained size of a result: the entry itself, and each itinerary with its legs and timestamps
+    private static final int ENTRY_BYTES = 256;
+    private static final int ITINERARY_BYTES = 64;
+    private static final int LEG_BYTES = 160;
+
+    private final boolean enabled;
+    private final AsyncCache<Query, Result> cache;
+    private final ConcurrentMap<ScheduleKey, Set<Query>> dependents = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ScheduleKey, Long> changedAt = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Query, Computation> inFlight = new ConcurrentHashMap<>();
+    // the computations still running, guarding changedAt against pruning the changes they have not checked yet
+    private final Set<Computation> computing = ConcurrentHashMap.newKeySet();
+    private final AtomicLong changes = new AtomicLong();
+    private final Counter invalidations;
+
+    public SearchResultCache(SchedulesClient schedulesClient,
+                             MeterRegistry meterRegistry,
+                             @Value("${search.cache.enabled:true}") boolean enabled,
+                             @Value("${search.cache.maximum-size:64MB}") DataSize maximumSize,
+                             @Value("${search.cache.ttl:PT5M}") Duration ttl) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumSize.toBytes())
+                .weigher((Query query, Result result) -> result.weight())
+                .expireAfterWrite(ttl)
+                .removalListener((Query query, Result result, RemovalCause cause) -> {
+                    if (result != null) {
+                        result.dependencies().forEach(dependency -> this.dependents.computeIfPresent(dependency, (key, queries) -> {
+                            queries.remove(query);
+                            return queries.isEmpty() ? null : queries;
+                        }));
+                    }
+                })
+                .recordStats()
+                .buildAsync();
+        schedulesClient.onChange(this::invalidate);
+
+        this.invalidations = Counter.builder("search.cache.invalidations")
+                .description("Cached search results dropped because a schedule they used changed")
+                .register(meterRegistry);
+        FunctionCounter.builder("search.cache.requests", this.cache, cache -> cache.synchronous().stats().hitCount())
+                .description("Searches answered from the result cache")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("search.cache.requests", this.cache, cache -> cache.synchronous().stats().missCount())
+                .description("Searches computed because no cached result was available")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("search.cache.hit.ratio", this.cache, cache -> cache.synchronous().stats().hitRate())
+                .description("Share of searches answered from the result cache")
+                .register(meterRegistry);
+        Gauge.builder("search.cache.size", this.cache, cache -> cache.synchronous().estimatedSize())
+                .description("Search results currently cached")
+                .register(meterRegistry);
+        Gauge.builder("search.cache.memory", this.cache,
+                        cache -> cache.synchronous().policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L))
+                .description("Estimated memory retained by cached search results")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Answers the search from the cache, joins an identical search in flight, or runs {@code search} and caches its
+     * outcome. A search that finds no itineraries is cached too; any other failure is not. Ranked searches are keyed
+     * by their {@code order} and {@code limit}, unranked ones have no order.
+     */
+    public Flux<RouteWithNStopDTO> search(String departure, String arrival, LocalDateTime departureDate, LocalDateTime arrivalDate,
+                                          int maxStops, ItineraryOrder order, int limit, Supplier<Flux<RouteWithNStopDTO>> search) {
+        if (!this.enabled) {
+            return search.get();
+        }
+        // schedules have minute resolution, so queries differing only in seconds have the same answer
+        Query query = new Query(departure, arrival, departureDate.truncatedTo(ChronoUnit.MINUTES), arrivalDate.truncatedTo(ChronoUnit.MINUTES),
+                maxStops, order, limit);
+        // the computation is shared and subscribed apart from the caller, so it runs with the caller's fetch priority
+        return Flux.deferContextual(context -> {
+            CompletableFuture<Result> future = this.cache.get(query,
+                    (key, executor) -> this.compute(key, search, FetchScheduler.scheduling(context)));
+            future.thenAccept(result -> {
+                // a schedule changed while this search was reading it: serve the result once, but do not keep it.
+                // Checked here rather than in compute, which may still hold the entry when the search completes
+                if (result.stale()) {
+                    this.cache.asMap().remove(query, future);
+                }
+            });
+            Computation computation = this.inFlight.get(query);
+            if (computation != null && !future.isDone()) {
+                return computation.itineraries();
+            }
+            return Mono.fromFuture(future, true)
+                    .flatMapMany(result -> result.itineraries().isEmpty()
+                            ? Flux.error(new NoSchedulesFoundException("No schedules found for requested route and dates"))
+                            : Flux.fromIterable(result.itineraries()));
+        });
+    }
+
+    /**
+     * Records {@code key} as an input of the search being cached, if any, before looking it up.
+     */
+    static <T> Mono<T> dependsOn(ScheduleKey key, Mono<T> lookup) {
+        return Mono.deferContextual(context -> {
+            context.<Set<ScheduleKey>>getOrEmpty(DEPENDENCIES).ifPresent(dependencies -> dependencies.add(key));
+            return lookup;
+        });
+    }
+
+    /**
+     * Runs the search apart from its callers, replaying its itineraries to each of them while it runs, and completes
+     * with the whole result once it is done.
+     */
+    private CompletableFuture<Result> compute(Query query, Supplier<Flux<RouteWithNStopDTO>> search, ContextView scheduling) {
+        Sinks.Many<RouteWithNStopDTO> tee = Sinks.many().replay().all();
+        Computation computation;
+        synchronized (this.computing) {
+            computation = new Computation(tee.asFlux(), this.changes.get());
+            this.computing.add(computation);
+        }
+        this.inFlight.put(query, computation);
+        Set<ScheduleKey> dependencies = ConcurrentHashMap.newKeySet();
+        return search.get()
+                .doOnNext(tee::tryEmitNext)
+                .collectList()
+                .doOnError(tee::tryEmitError)
+                .onErrorResume(NoSchedulesFoundException.class, notFound -> Mono.just(List.of()))
+                .contextWrite(context -> context.put(DEPENDENCIES, dependencies))
+                .contextWrite(scheduling)
+                .map(itineraries -> {
+                    if (itineraries.isEmpty()) {
+                        tee.tryEmitError(new NoSchedulesFoundException("No schedules found for requested route and dates"));
+                    } else {
+                        tee.tryEmitComplete();
+                    }
+                    dependencies.forEach(dependency -> this.dependents.computeIfAbsent(dependency, key -> ConcurrentHashMap.newKeySet()).add(query));
+                    boolean stale = dependencies.stream().anyMatch(dependency -> this.changedAt.getOrDefault(dependency, Long.MIN_VALUE) > computation.startedAt());
+                    return new Result(List.copyOf(itineraries), Set.copyOf(dependencies), stale);
+                })
+                .doFinally(signal -> {
+                    this.inFlight.remove(query, computation);
+                    this.computing.remove(computation);
+                })
+                .toFuture();
+    }
+
+    private void invalidate(ScheduleKey changed) {
+        synchronized (this.computing) {
+            long change = this.changes.incrementAndGet();
+            this.changedAt.put(changed, change);
+            // a change can only make stale the computations that started before it
+            long oldest = this.computing.stream().mapToLong(Computation::startedAt).min().orElse(change);
+            this.changedAt.values().removeIf(at -> at <= oldest);
+        }
+        Set<Query> queries = this.dependents.remove(changed);
+        if (queries != null) {
+            this.cache.synchronous().invalidateAll(queries);
+            this.invalidations.increment(queries.size());
+        }
+    }
+
+    /**
+     * A search in progress: its itineraries so far, then the rest as they are found, and the number of schedule
+     * changes seen when it started.
+     */
+    private record Computation(Flux<RouteWithNStopDTO> itineraries, long startedAt) {
+    }
+
+    private record Query(String departure, String arrival, LocalDateTime departureDate, LocalDateTime arrivalDate, int maxStops,
+                         ItineraryOrder order, int limit) {
+    }
+
+    private record Result(List<RouteWithNStopDTO> itineraries, Set<ScheduleKey> dependencies, boolean stale) {
+
+        int weight() {
+            int weight = ENTRY_BYTES;
+            for (RouteWithNStopDTO itinerary : itineraries) {
+                weight += ITINERARY_BYTES + itinerary.legs().size() * LEG_BYTES;
+            }
+            return weight;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.ryanair.task.interconnected_flights.service;
+
+import com.ryanair.task.interconnected_flights.client.SchedulesClient;
+import com.ryanair.task.interconnected_flights.model.TimetableSnapshot;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * Persists the route graph and cached schedules to a local snapshot and restores them at startup,
+ * so a restarted instance answers from warm data while the regular refreshes reconcile it with the upstream.
+ */
+@Service
+public class TimetableSnapshotService {
+
+    private static final Logger log = LoggerFactory.getLogger(TimetableSnapshotService.class);
+
+    private final RouteGraphService routeGraphService;
+    private final SchedulesClient schedulesClient;
+    private final boolean enabled;
+    private final Path path;
+
+    public TimetableSnapshotService(RouteGraphService routeGraphService, SchedulesClient schedulesClient,
+                                    @Value("${snapshot.enabled:false}") boolean enabled,
+                                    @Value("${snapshot.path:data/timetable.snapshot}") Path path) {
+        this.routeGraphService = routeGraphService;
+        this.schedulesClient = schedulesClient;
+        this.enabled = enabled;
+        this.path = path;
+    }
+
+    @PostConstruct
+    public void restore() {
+        if (!this.enabled || !Files.exists(this.path)) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            TimetableSnapshot snapshot = TimetableSnapshotStore.read(this.path);
+            if (snapshot.routes() != null) {
+                this.routeGraphService.restore(snapshot.routes());
+            }
+            this.schedulesClient.restore(snapshot.schedules());
+            log.info("Restored timetable snapshot from {} ({} schedules, saved {}) in {} ms",
+                    this.path, snapshot.schedules().size(), snapshot.savedAt(), (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable timetable snapshot {}", this.path, e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${snapshot.save-interval:PT5M}", initialDelayString = "${snapshot.save-interval:PT5M}")
+    @PreDestroy
+    public void save() {
+        if (!this.enabled) {
+            return;
+        }
+        TimetableSnapshot snapshot = new TimetableSnapshot(Instant.now(), this.routeGraphService.currentGraph(), this.schedulesClient.cachedSchedules());
+        if (snapshot.routes() == null && snapshot.schedules().isEmpty()) {
+            return;
+        }
+        try {
+            TimetableSnapshotStore.write(this.path, snapshot);
+        } catch (IOException e) {
+            log.warn("Could not write timetable snapshot {}", this.path, e);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.ryanair.task.interconnected_flights.service;
+
+import com.ryanair.task.interconnected_flights.model.CachedTimetable;
+import com.ryanair.task.interconnected_flights.model.RouteGraph;
+import com.ryanair.task.interconnected_flights.model.ScheduleKey;
+import com.ryanair.task.interconnected_flights.model.Timetable;
+import com.ryanair.task.interconnected_flights.model.TimetableSnapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary, versioned on-disk format of a {@link TimetableSnapshot}.
+ * <p>
+ * Layout (big endian): magic, version, save time, an airport code table, the route list as pairs of airport
+ * indices, then every schedule as its key, fetch time and the timetable's departure, arrival and flight number
+ * columns. Files are written to a temporary sibling and moved into place atomically, and read through a
+ * memory-mapped buffer so a restart decodes the whole snapshot without intermediate objects.
+ */
+public final class TimetableSnapshotStore {
+
+    static final int MAGIC = 0x52594654;
+    static final int VERSION = 2;
+    // length written in place of a string's to mark a null one, e.g. a flight without a number
+    private static final int NULL_STRING = 0xFFFF;
+
+    private TimetableSnapshotStore() {
+    }
+
+    public static void write(Path path, TimetableSnapshot snapshot) throws IOException {
+        Map<String, Integer> airportIds = new LinkedHashMap<>();
+        List<int[]> routes = new ArrayList<>();
+        if (snapshot.routes() != null) {
+            snapshot.routes().forEachRoute((origin, destination) -> routes.add(new int[]{
+                    airportIds.computeIfAbsent(origin, code -> airportIds.size()),
+                    airportIds.computeIfAbsent(destination, code -> airportIds.size())}));
+        }
+        snapshot.schedules().keySet().forEach(key -> {
+            airportIds.computeIfAbsent(key.departure(), code -> airportIds.size());
+            airportIds.computeIfAbsent(key.arrival(), code -> airportIds.size());
+        });
+
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temporary = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try (OutputStream file = Files.newOutputStream(temporary);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(snapshot.savedAt().toEpochMilli());
+
+            out.writeInt(airportIds.size());
+            for (String code : airportIds.keySet()) {
+                writeString(out, code);
+            }
+
+            out.writeBoolean(snapshot.routes() != null);
+            out.writeLong(snapshot.routes() == null ? 0 : snapshot.routes().loadedAt().toEpochMilli());
+            out.writeInt(routes.size());
+            for (int[] route : routes) {
+                out.writeInt(route[0]);
+                out.writeInt(route[1]);
+            }
+
+            out.writeInt(snapshot.schedules().size());
+            for (Map.Entry<ScheduleKey, CachedTimetable> entry : snapshot.schedules().entrySet()) {
+                ScheduleKey key = entry.getKey();
+                Timetable timetable = entry.getValue().timetable();
+                out.writeInt(airportIds.get(key.departure()));
+                out.writeInt(airportIds.get(key.arrival()));
+                out.writeShort(key.year());
+                out.writeByte(key.month());
+                out.writeLong(entry.getValue().fetchedAt().toEpochMilli());
+                out.writeInt(timetable.size());
+                for (int i = 0; i < timetable.size(); i++) {
+                    out.writeInt(timetable.departure(i));
+                }
+                for (int i = 0; i < timetable.size(); i++) {
+                    out.writeInt(timetable.arrival(i));
+                }
+                for (int i = 0; i < timetable.size(); i++) {
+                    writeString(out, timetable.flightNumber(i));
+                }
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static TimetableSnapshot read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a timetable snapshot: " + path);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported timetable snapshot version " + version + " in " + path);
+            }
+            Instant savedAt = Instant.ofEpochMilli(buffer.getLong());
+
+            String[] airports = new String[buffer.getInt()];
+            for (int i = 0; i < airports.length; i++) {
+                airports[i] = readString(buffer).intern();
+            }
+
+            boolean hasRoutes = buffer.get() != 0;
+            Instant routesLoadedAt = Instant.ofEpochMilli(buffer.getLong());
+            int routeCount = buffer.getInt();
+            RouteGraph.Builder routes = RouteGraph.builder();
+            for (int i = 0; i < routeCount; i++) {
+                routes.addRoute(airports[buffer.getInt()], airports[buffer.getInt()]);
+            }
+
+            int scheduleCount = buffer.getInt();
+            Map<ScheduleKey, CachedTimetable> schedules = new HashMap<>(scheduleCount * 2);
+            for (int i = 0; i < scheduleCount; i++) {
+                ScheduleKey key = new ScheduleKey(airports[buffer.getInt()], airports[buffer.getInt()], buffer.getShort(), buffer.get());
+                Instant fetchedAt = Instant.ofEpochMilli(buffer.getLong());
+                int flights = buffer.getInt();
+                int[] departures = new int[flights];
+                int[] arrivals = new int[flights];
+                String[] flightNumbers = new String[flights];
+                buffer.asIntBuffer().get(departures);
+                buffer.position(buffer.position() + flights * Integer.BYTES);
+                buffer.asIntBuffer().get(arrivals);
+                buffer.position(buffer.position() + flights * Integer.BYTES);
+                for (int flight = 0; flight < flights; flight++) {
+                    flightNumbers[flight] = readString(buffer);
+                }
+                schedules.put(key, new CachedTimetable(Timetable.of(departures, arrivals, flightNumbers), fetchedAt));
+            }
+
+            return new TimetableSnapshot(savedAt, hasRoutes ? routes.build(routesLoadedAt) : null, schedules);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeShort(NULL_STRING);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length >= NULL_STRING) {
+            throw new IOException("String too long for a timetable snapshot: " + bytes.length + " bytes");
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        if (length == NULL_STRING) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
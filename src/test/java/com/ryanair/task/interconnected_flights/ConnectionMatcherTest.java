@@ -0,0 +1,69 @@
+package com.ryanair.task.interconnected_flights;
+
+import com.ryanair.task.interconnected_flights.dto.DayDTO;
+import com.ryanair.task.interconnected_flights.dto.FlightDTO;
+import com.ryanair.task.interconnected_flights.dto.MonthScheduleDTO;
+import com.ryanair.task.interconnected_flights.model.Timetable;
+import com.ryanair.task.interconnected_flights.service.ConnectionMatcher;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionMatcherTest {
+
+    private final Timetable inbound = timetable(
+            new FlightDTO("101", "06:00", "07:00"),
+            new FlightDTO("103", "08:00", "09:30"));
+
+    private final Timetable outbound = timetable(
+            new FlightDTO("201", "08:59", "10:00"),
+            new FlightDTO("203", "09:00", "10:30"),
+            new FlightDTO("205", "11:30", "13:00"),
+            new FlightDTO("207", "15:00", "18:00"));
+
+    @Test
+    void testMatchesOnlyConnectionsRespectingMinimumConnectionTime() {
+        List<String> connections = match(new ConnectionMatcher(Duration.ofHours(2), Duration.ofHours(24)), LocalDateTime.parse("2018-03-01T16:00"));
+
+        assertEquals(List.of("101-203", "101-205", "103-205"), connections);
+    }
+
+    @Test
+    void testMinimumConnectionTimeIsConfigurable() {
+        List<String> connections = match(new ConnectionMatcher(Duration.ofMinutes(30), Duration.ofHours(24)), LocalDateTime.parse("2018-03-01T16:00"));
+
+        assertEquals(List.of("101-201", "101-203", "101-205", "103-205"), connections);
+    }
+
+    @Test
+    void testConnectionsArrivingAfterLatestArrivalAreDiscarded() {
+        List<String> connections = match(new ConnectionMatcher(Duration.ofHours(2), Duration.ofHours(24)), LocalDateTime.parse("2018-03-01T20:00"));
+
+        assertTrue(connections.contains("103-207"));
+        assertEquals(5, connections.size());
+    }
+
+    @Test
+    void testConnectionsWaitingLongerThanMaximumConnectionTimeAreDiscarded() {
+        List<String> connections = match(new ConnectionMatcher(Duration.ofHours(2), Duration.ofHours(6)), LocalDateTime.parse("2018-03-01T20:00"));
+
+        assertEquals(List.of("101-203", "101-205", "103-205", "103-207"), connections);
+    }
+
+    private List<String> match(ConnectionMatcher matcher, LocalDateTime latestArrival) {
+        List<String> connections = new ArrayList<>();
+        matcher.match(inbound, 0, inbound.size(), outbound, Timetable.toEpochMinute(latestArrival),
+                (i, j) -> connections.add(inbound.flightNumber(i) + "-" + outbound.flightNumber(j)));
+        return connections;
+    }
+
+    private static Timetable timetable(FlightDTO... flights) {
+        return Timetable.of(YearMonth.of(2018, 3), List.of(new MonthScheduleDTO(3, List.of(new DayDTO(1, List.of(flights))))));
+    }
+}
@@ -0,0 +1,107 @@
+package com.ryanair.task.interconnected_flights;
+
+import com.ryanair.task.interconnected_flights.client.RoutesClient;
+import com.ryanair.task.interconnected_flights.client.SchedulesClient;
+import com.ryanair.task.interconnected_flights.config.FlightSearchProperties;
+import com.ryanair.task.interconnected_flights.config.PrecomputeProperties;
+import com.ryanair.task.interconnected_flights.dto.*;
+import com.ryanair.task.interconnected_flights.model.DirectRoute;
+import com.ryanair.task.interconnected_flights.model.ScheduleKey;
+import com.ryanair.task.interconnected_flights.model.Timetable;
+import com.ryanair.task.interconnected_flights.service.ConnectionPrecomputeJob;
+import com.ryanair.task.interconnected_flights.service.FlightService;
+import com.ryanair.task.interconnected_flights.service.PrecomputedItineraryStore;
+import com.ryanair.task.interconnected_flights.service.RouteGraphService;
+import com.ryanair.task.interconnected_flights.service.SearchResultCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ConnectionPrecomputeJobTest {
+
+    private static final LocalDate TODAY = LocalDate.parse("2018-03-01");
+
+    @Mock
+    private RoutesClient routesClient;
+
+    @Mock
+    private SchedulesClient schedulesClient;
+
+    private PrecomputedItineraryStore store;
+
+    private ConnectionPrecomputeJob job;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RouteGraphService routeGraphService = new RouteGraphService(routesClient, meterRegistry);
+        store = new PrecomputedItineraryStore();
+        FlightService flightService = new FlightService(routeGraphService, schedulesClient,
+                new FlightSearchProperties(Duration.ofHours(2), Duration.ofHours(24), 8, 1, 3, Duration.ofDays(31), 5000, 100000, 500, 16, FlightSearchProperties.Engine.REACTIVE), store,
+                new SearchResultCache(schedulesClient, meterRegistry, false, DataSize.ofMegabytes(64), Duration.ofMinutes(5)),
+                meterRegistry, ObservationRegistry.NOOP);
+        job = new ConnectionPrecomputeJob(routeGraphService, schedulesClient, flightService, store,
+                new PrecomputeProperties(true, List.of("DUB-WRO"), 4, 4));
+
+        when(routesClient.getRoutes()).thenReturn(Flux.just(new DirectRoute("DUB", "WRO")));
+    }
+
+    @Test
+    void testOnlyDaysWhoseScheduleChangedAreRecomputed() {
+        when(schedulesClient.getSchedule("DUB", "WRO", 2018, 3)).thenReturn(timetable("12:40", "12:40", "12:40", "12:40"));
+        assertEquals(4, job.run(TODAY).block());
+
+        // the flight of the 4th moves; the tables of the 3rd and the 4th cover it, those of the 1st and 2nd do not
+        when(schedulesClient.getSchedule("DUB", "WRO", 2018, 3)).thenReturn(timetable("12:40", "12:40", "12:40", "14:00"));
+        assertEquals(2, job.refreshChanged(new ScheduleKey("DUB", "WRO", 2018, 3), TODAY).block());
+
+        List<RouteWithNStopDTO> fourth = store.find("DUB", "WRO",
+                LocalDateTime.parse("2018-03-04T00:00"), LocalDateTime.parse("2018-03-04T23:59"), 1).orElseThrow();
+        assertEquals(LocalDateTime.parse("2018-03-04T14:00"), fourth.getFirst().legs().getFirst().departureDateTime());
+        assertEquals(0, job.run(TODAY).block());
+    }
+
+    @Test
+    void testChangeOutsideThePairsOrTheHorizonRecomputesNothing() {
+        when(schedulesClient.getSchedule("DUB", "WRO", 2018, 3)).thenReturn(timetable("12:40", "12:40", "12:40", "12:40"));
+        assertEquals(4, job.run(TODAY).block());
+        Mockito.clearInvocations(schedulesClient);
+
+        assertEquals(0, job.refreshChanged(new ScheduleKey("STN", "BGY", 2018, 3), TODAY).block());
+        assertEquals(0, job.refreshChanged(new ScheduleKey("DUB", "WRO", 2018, 5), TODAY).block());
+        verify(schedulesClient, never()).getSchedule(Mockito.anyString(), Mockito.anyString(), Mockito.anyInt(), Mockito.anyInt());
+    }
+
+    /**
+     * A March timetable with one DUB-WRO flight on each of the first days, departing at the given times.
+     */
+    private static Mono<Timetable> timetable(String... departures) {
+        List<DayDTO> days = new ArrayList<>();
+        for (int day = 0; day < departures.length; day++) {
+            String arrival = LocalTime.parse(departures[day]).plusHours(4).toString();
+            days.add(new DayDTO(day + 1, List.of(new FlightDTO("99", departures[day], arrival))));
+        }
+        return Mono.just(Timetable.of(YearMonth.of(2018, 3), List.of(new MonthScheduleDTO(3, days))));
+    }
+}
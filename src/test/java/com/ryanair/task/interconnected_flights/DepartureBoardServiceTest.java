@@ -0,0 +1,116 @@
+package com.ryanair.task.interconnected_flights;
+
+import com.ryanair.task.interconnected_flights.client.RoutesClient;
+import com.ryanair.task.interconnected_flights.client.SchedulesClient;
+import com.ryanair.task.interconnected_flights.config.FlightSearchProperties;
+import com.ryanair.task.interconnected_flights.dto.DayDTO;
+import com.ryanair.task.interconnected_flights.dto.DestinationDTO;
+import com.ryanair.task.interconnected_flights.dto.FlightDTO;
+import com.ryanair.task.interconnected_flights.dto.LegDTO;
+import com.ryanair.task.interconnected_flights.dto.MonthScheduleDTO;
+import com.ryanair.task.interconnected_flights.exception.InvalidSearchException;
+import com.ryanair.task.interconnected_flights.exception.NoSchedulesFoundException;
+import com.ryanair.task.interconnected_flights.model.DirectRoute;
+import com.ryanair.task.interconnected_flights.model.Timetable;
+import com.ryanair.task.interconnected_flights.service.DepartureBoardService;
+import com.ryanair.task.interconnected_flights.service.RouteGraphService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DepartureBoardServiceTest {
+
+    private static final LocalDateTime FROM = LocalDateTime.parse("2018-03-01T06:00");
+    private static final LocalDateTime TO = LocalDateTime.parse("2018-03-01T18:00");
+
+    @Mock
+    private RoutesClient routesClient;
+
+    @Mock
+    private SchedulesClient schedulesClient;
+
+    private DepartureBoardService departureBoardService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        departureBoardService = new DepartureBoardService(new RouteGraphService(routesClient, meterRegistry), schedulesClient,
+                new FlightSearchProperties(Duration.ofHours(2), Duration.ofHours(24), 8, 1, 3, Duration.ofDays(31), 5000, 100000, 500, 16, FlightSearchProperties.Engine.REACTIVE),
+                meterRegistry, ObservationRegistry.NOOP, 100, Duration.ofMinutes(30), 64);
+
+        when(routesClient.getRoutes()).thenReturn(Flux.just(new DirectRoute("DUB", "STN"), new DirectRoute("DUB", "WRO"),
+                new DirectRoute("STN", "BCN"), new DirectRoute("STN", "WRO"), new DirectRoute("STN", "DUB")));
+        when(schedulesClient.getSchedule("DUB", "STN", 2018, 3)).thenReturn(timetable("06:25", "07:35"));
+        when(schedulesClient.getSchedule("DUB", "WRO", 2018, 3)).thenReturn(timetable("12:40", "16:40"));
+        when(schedulesClient.getSchedule("STN", "BCN", 2018, 3)).thenReturn(timetable("10:00", "13:00"));
+        when(schedulesClient.getSchedule("STN", "WRO", 2018, 3)).thenReturn(timetable("09:50", "13:20"));
+        when(schedulesClient.getSchedule("STN", "DUB", 2018, 3)).thenReturn(timetable("09:40", "10:50"));
+    }
+
+    @Test
+    void testListsEveryDestinationWithItsEarliestArrival() {
+        List<DestinationDTO> destinations = departureBoardService.findDestinations("DUB", FROM, TO, 1).collectList().block();
+
+        assertNotNull(destinations);
+        assertEquals(List.of("STN", "BCN", "WRO"), destinations.stream().map(DestinationDTO::airport).toList());
+        DestinationDTO wro = destinations.get(2);
+        assertEquals(1, wro.stops());
+        assertEquals(LocalDateTime.parse("2018-03-01T13:20"), wro.arrivalDateTime());
+        assertEquals(List.of("DUB", "STN"), wro.legs().stream().map(LegDTO::departureAirport).toList());
+    }
+
+    @Test
+    void testDirectOnlyBoardIsServedFromTheIndex() {
+        departureBoardService.findDestinations("DUB", FROM, TO, 1).blockLast();
+        List<DestinationDTO> direct = departureBoardService.findDestinations("DUB", FROM, TO, 0).collectList().block();
+
+        assertNotNull(direct);
+        assertEquals(List.of("STN", "WRO"), direct.stream().map(DestinationDTO::airport).toList());
+        assertEquals(LocalDateTime.parse("2018-03-01T16:40"), direct.get(1).arrivalDateTime());
+        verify(schedulesClient, times(1)).getSchedule("DUB", "WRO", 2018, 3);
+        assertThrows(InvalidSearchException.class, () -> departureBoardService.findDestinations("DUB", FROM, TO, 2).blockLast());
+    }
+
+    @Test
+    void testRouteThatCannotBeFetchedIsLeftOffTheBoardUntilItCan() {
+        when(schedulesClient.getSchedule("DUB", "WRO", 2018, 3)).thenReturn(Mono.error(new IllegalStateException("Upstream down")));
+
+        List<DestinationDTO> direct = departureBoardService.findDestinations("DUB", FROM, TO, 0).collectList().block();
+        assertNotNull(direct);
+        assertEquals(List.of("STN"), direct.stream().map(DestinationDTO::airport).toList());
+
+        // the incomplete index is not kept, so the next search fetches the route again
+        when(schedulesClient.getSchedule("DUB", "WRO", 2018, 3)).thenReturn(timetable("12:40", "16:40"));
+        direct = departureBoardService.findDestinations("DUB", FROM, TO, 0).collectList().block();
+        assertNotNull(direct);
+        assertEquals(List.of("STN", "WRO"), direct.stream().map(DestinationDTO::airport).toList());
+        verify(schedulesClient, times(2)).getSchedule("DUB", "WRO", 2018, 3);
+    }
+
+    @Test
+    void testBoardWithoutFlightsIsNotFound() {
+        assertThrows(NoSchedulesFoundException.class, () -> departureBoardService.findDestinations("DUB",
+                LocalDateTime.parse("2018-03-01T20:00"), LocalDateTime.parse("2018-03-01T23:00"), 1).blockLast());
+    }
+
+    private static Mono<Timetable> timetable(String departure, String arrival) {
+        return Mono.just(Timetable.of(YearMonth.of(2018, 3), List.of(
+                new MonthScheduleDTO(3, List.of(new DayDTO(1, List.of(new FlightDTO("1", departure, arrival))))))));
+    }
+}
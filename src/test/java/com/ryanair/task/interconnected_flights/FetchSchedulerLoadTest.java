@@ -0,0 +1,183 @@
+package com.ryanair.task.interconnected_flights;
+
+import com.ryanair.task.interconnected_flights.client.FetchScheduler;
+import com.ryanair.task.interconnected_flights.config.UpstreamProperties;
+import com.ryanair.task.interconnected_flights.config.UpstreamWebClients;
+import com.ryanair.task.interconnected_flights.exception.UpstreamSaturatedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Saturates a local stub upstream that answers every call after 50ms and checks that the scheduler keeps
+ * in-flight calls bounded while queued callers still complete in predictable time, admits them by priority and
+ * request, and backs off when the upstream throttles.
+ */
+public class FetchSchedulerLoadTest {
+
+    private static final Duration STUB_LATENCY = Duration.ofMillis(50);
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private DisposableServer stub;
+    private WebClient webClient;
+
+    @BeforeEach
+    void setUp() {
+        stub = HttpServer.create()
+                .port(0)
+                .route(routes -> routes.get("/schedules/{id}", (request, response) -> {
+                    peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    return response.header("Content-Type", "application/json")
+                            .sendString(Mono.delay(STUB_LATENCY)
+                                    .thenReturn("{\"month\":3,\"days\":[]}")
+                                    .doFinally(signal -> inFlight.decrementAndGet()));
+                })
+                .get("/throttled", (request, response) -> response.status(429).send()))
+                .bindNow();
+
+        UpstreamProperties.Client properties = new UpstreamProperties.Client(
+                "http://localhost:" + stub.port(), 50, 500, Duration.ofSeconds(5), Duration.ofSeconds(30), Duration.ofSeconds(2), Duration.ofSeconds(5),
+                Duration.ofSeconds(10), DataSize.ofMegabytes(2), true, true, 8, 1000, 10_000, 1, Duration.ofSeconds(5));
+        webClient = UpstreamWebClients.create(WebClient.builder(), "stub", properties.baseUrl(), properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.disposeNow();
+    }
+
+    @Test
+    @Tag("load")
+    void testInFlightCallsStayBoundedUnderSaturation() {
+        FetchScheduler scheduler = new FetchScheduler("stub", 8, 1000, 10_000, 1, Duration.ofSeconds(5));
+
+        List<Long> latenciesMillis = Flux.range(0, 400)
+                .flatMap(i -> {
+                    long start = System.nanoTime();
+                    return scheduler.schedule(webClient.get().uri("/schedules/" + i).retrieve().bodyToMono(String.class))
+                            .map(body -> (System.nanoTime() - start) / 1_000_000);
+                }, 400)
+                .sort()
+                .collectList()
+                .block(Duration.ofSeconds(30));
+
+        assertNotNull(latenciesMillis);
+        assertEquals(400, latenciesMillis.size());
+        assertTrue(peakInFlight.get() <= 8, "peak in-flight was " + peakInFlight.get());
+        // 400 calls through 8 slots drain in 50 waves of ~50ms; the slowest caller waits for all of them
+        long p99 = latenciesMillis.get(395);
+        assertTrue(p99 < 10_000, "p99 was " + p99 + "ms");
+        assertEquals(0, scheduler.inFlight());
+        assertEquals(0, scheduler.queued());
+    }
+
+    @Test
+    @Tag("load")
+    void testCallsBeyondTheQueueAreRejectedImmediately() {
+        FetchScheduler scheduler = new FetchScheduler("stub", 2, 10, 10_000, 1, Duration.ofSeconds(5));
+
+        List<String> outcomes = Flux.range(0, 100)
+                .flatMap(i -> scheduler.schedule(webClient.get().uri("/schedules/" + i).retrieve().bodyToMono(String.class))
+                        .map(body -> "ok")
+                        .onErrorResume(UpstreamSaturatedException.class, error -> Mono.just("rejected")), 100)
+                .collectList()
+                .block(Duration.ofSeconds(30));
+
+        assertNotNull(outcomes);
+        assertEquals(12, outcomes.stream().filter("ok"::equals).count());
+        assertEquals(88, outcomes.stream().filter("rejected"::equals).count());
+        assertTrue(peakInFlight.get() <= 2);
+    }
+
+    @Test
+    void testInteractiveCallsOvertakeQueuedBatchCalls() {
+        FetchScheduler scheduler = new FetchScheduler("stub", 1, 100, 10_000, 1, Duration.ofSeconds(5));
+        Sinks.Empty<Void> blocker = Sinks.empty();
+        List<String> admitted = new CopyOnWriteArrayList<>();
+
+        scheduler.schedule(blocker.asMono()).subscribe();
+        Flux.range(0, 3)
+                .flatMap(i -> scheduler.schedule(Mono.fromCallable(() -> admitted.add("batch"))))
+                .contextWrite(FetchScheduler.withPriority(FetchScheduler.Priority.BATCH))
+                .subscribe();
+        scheduler.schedule(Mono.fromCallable(() -> admitted.add("interactive"))).subscribe();
+        assertEquals(3, scheduler.queued(FetchScheduler.Priority.BATCH));
+        assertEquals(1, scheduler.queued(FetchScheduler.Priority.INTERACTIVE));
+
+        blocker.tryEmitEmpty();
+        assertEquals(List.of("interactive", "batch", "batch", "batch"), admitted);
+    }
+
+    @Test
+    void testBatchCallsKeepAShareUnderInteractiveLoad() {
+        FetchScheduler scheduler = new FetchScheduler("stub", 1, 100, 10_000, 1, Duration.ofSeconds(5));
+        Sinks.Empty<Void> blocker = Sinks.empty();
+        List<String> admitted = new CopyOnWriteArrayList<>();
+
+        scheduler.schedule(blocker.asMono()).subscribe();
+        Flux.range(0, 2)
+                .flatMap(i -> scheduler.schedule(Mono.fromCallable(() -> admitted.add("batch"))))
+                .contextWrite(FetchScheduler.withPriority(FetchScheduler.Priority.BATCH))
+                .subscribe();
+        Flux.range(0, 8)
+                .flatMap(i -> scheduler.schedule(Mono.fromCallable(() -> admitted.add("interactive"))))
+                .subscribe();
+
+        blocker.tryEmitEmpty();
+        // the blocking call opened the first run of five interactive admissions
+        assertEquals(List.of("interactive", "interactive", "interactive", "batch",
+                "interactive", "interactive", "interactive", "interactive", "batch", "interactive"), admitted);
+    }
+
+    @Test
+    void testQueuedRequestsAreAdmittedInTurn() {
+        FetchScheduler scheduler = new FetchScheduler("stub", 1, 100, 10_000, 1, Duration.ofSeconds(5));
+        Sinks.Empty<Void> blocker = Sinks.empty();
+        List<String> admitted = new CopyOnWriteArrayList<>();
+
+        scheduler.schedule(blocker.asMono()).subscribe();
+        Flux.range(0, 4)
+                .flatMap(i -> scheduler.schedule(Mono.fromCallable(() -> admitted.add("large"))))
+                .contextWrite(FetchScheduler.request())
+                .subscribe();
+        Flux.range(0, 2)
+                .flatMap(i -> scheduler.schedule(Mono.fromCallable(() -> admitted.add("small"))))
+                .contextWrite(FetchScheduler.request())
+                .subscribe();
+
+        blocker.tryEmitEmpty();
+        assertEquals(List.of("large", "small", "large", "small", "large", "large"), admitted);
+    }
+
+    @Test
+    void testThrottledCallsReduceTheRateUntilCallsSucceedAgain() {
+        FetchScheduler scheduler = new FetchScheduler("stub", 8, 100, 100, 1, Duration.ofSeconds(5));
+
+        assertThrows(WebClientResponseException.TooManyRequests.class, () ->
+                scheduler.schedule(webClient.get().uri("/throttled").retrieve().bodyToMono(String.class)).block(Duration.ofSeconds(5)));
+        assertEquals(50, scheduler.rate(), 0.001);
+
+        Flux.range(0, 20)
+                .flatMap(i -> scheduler.schedule(webClient.get().uri("/schedules/" + i).retrieve().bodyToMono(String.class)))
+                .blockLast(Duration.ofSeconds(10));
+        assertTrue(scheduler.rate() > 50, "rate was " + scheduler.rate());
+        assertEquals(0, scheduler.inFlight());
+    }
+}
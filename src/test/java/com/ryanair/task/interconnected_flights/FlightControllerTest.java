@@ -0,0 +1,106 @@
+package com.ryanair.task.interconnected_flights;
+
+import com.ryanair.task.interconnected_flights.config.JsonCodecConfiguration;
+import com.ryanair.task.interconnected_flights.controller.FlightController;
+import com.ryanair.task.interconnected_flights.dto.LegDTO;
+import com.ryanair.task.interconnected_flights.dto.RouteWithNStopDTO;
+import com.ryanair.task.interconnected_flights.exception.NoSchedulesFoundException;
+import com.ryanair.task.interconnected_flights.service.DepartureBoardService;
+import com.ryanair.task.interconnected_flights.service.FlightService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.when;
+
+@WebFluxTest(FlightController.class)
+@Import(JsonCodecConfiguration.class)
+public class FlightControllerTest {
+
+    private static final String SEARCH = "/interconnections?departure=DUB&arrival=WRO"
+            + "&departureDateTime=2018-03-01T06:00&arrivalDateTime=2018-03-01T23:00";
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockitoBean
+    private FlightService flightService;
+
+    @MockitoBean
+    private DepartureBoardService departureBoardService;
+
+    private static final RouteWithNStopDTO DIRECT = new RouteWithNStopDTO(0, List.of(
+            new LegDTO("DUB", "WRO", LocalDateTime.parse("2018-03-01T06:25"), LocalDateTime.parse("2018-03-01T10:05"))));
+
+    @Test
+    void testSearchWithoutResultsAnswers404() {
+        when(flightService.findFlights(eq("DUB"), eq("WRO"), any(), any(), isNull(), isNull(), isNull()))
+                .thenReturn(Flux.error(new NoSchedulesFoundException("No schedules found for requested route and dates")));
+
+        for (MediaType mediaType : List.of(MediaType.APPLICATION_JSON, MediaType.APPLICATION_NDJSON, MediaType.TEXT_EVENT_STREAM)) {
+            webTestClient.get().uri(SEARCH)
+                    .accept(mediaType)
+                    .exchange()
+                    .expectStatus().isNotFound()
+                    .expectBody(String.class).isEqualTo("No schedules found for requested route and dates");
+        }
+    }
+
+    @Test
+    void testNdjsonSearchStreamsItinerariesBeforeItCompletes() {
+        assertFirstItineraryArrivesWhileSearching(MediaType.APPLICATION_NDJSON);
+    }
+
+    @Test
+    void testEventStreamSearchStreamsItinerariesBeforeItCompletes() {
+        assertFirstItineraryArrivesWhileSearching(MediaType.TEXT_EVENT_STREAM);
+    }
+
+    @Test
+    void testSearchResultsAreWrittenAsJsonArray() {
+        when(flightService.findFlights(eq("DUB"), eq("WRO"), any(), any(), isNull(), isNull(), isNull()))
+                .thenReturn(Flux.just(DIRECT));
+
+        webTestClient.get().uri(SEARCH)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("[{\"stops\":0,\"legs\":[{\"departureAirport\":\"DUB\",\"arrivalAirport\":\"WRO\","
+                        + "\"departureDateTime\":\"2018-03-01T06:25:00\",\"arrivalDateTime\":\"2018-03-01T10:05:00\"}]}]");
+    }
+
+    /**
+     * Answers the search with a direct flight and keeps it running: the client must receive the itinerary anyway.
+     */
+    private void assertFirstItineraryArrivesWhileSearching(MediaType mediaType) {
+        Sinks.Many<RouteWithNStopDTO> search = Sinks.many().unicast().onBackpressureBuffer();
+        when(flightService.findFlights(eq("DUB"), eq("WRO"), any(), any(), isNull(), isNull(), isNull()))
+                .thenReturn(search.asFlux());
+        search.tryEmitNext(DIRECT);
+
+        Flux<RouteWithNStopDTO> body = webTestClient.get().uri(SEARCH)
+                .accept(mediaType)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(mediaType)
+                .returnResult(RouteWithNStopDTO.class)
+                .getResponseBody();
+
+        // the search never completes, so a buffered response would time out here
+        assertEquals(DIRECT, body.blockFirst(Duration.ofSeconds(5)));
+    }
+}
@@ -1,21 +1,50 @@
 package com.ryanair.task.interconnected_flights;
 
+import com.ryanair.task.interconnected_flights.client.FetchScheduler;
 import com.ryanair.task.interconnected_flights.client.RoutesClient;
 import com.ryanair.task.interconnected_flights.client.SchedulesClient;
+import com.ryanair.task.interconnected_flights.config.FlightSearchProperties;
 import com.ryanair.task.interconnected_flights.dto.*;
+import com.ryanair.task.interconnected_flights.exception.InvalidSearchException;
 import com.ryanair.task.interconnected_flights.exception.NoSchedulesFoundException;
 import com.ryanair.task.interconnected_flights.exception.RouteNotFoundException;
+import com.ryanair.task.interconnected_flights.model.DirectRoute;
+import com.ryanair.task.interconnected_flights.model.ScheduleKey;
+import com.ryanair.task.interconnected_flights.model.Timetable;
 import com.ryanair.task.interconnected_flights.service.FlightService;
+import com.ryanair.task.interconnected_flights.service.ItineraryOrder;
+import com.ryanair.task.interconnected_flights.service.PrecomputedItineraryStore;
+import com.ryanair.task.interconnected_flights.service.RouteGraphService;
+import com.ryanair.task.interconnected_flights.service.SearchResultCache;
+import io.micrometer.core.instrument.observation.DefaultMeterObservationHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
 import org.mockito.MockitoAnnotations;
+import org.springframework.util.unit.DataSize;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
+import static org.awaitility.Awaitility.await;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class FlightServiceTest {
@@ -26,21 +55,52 @@ public class FlightServiceTest {
     @Mock
     private SchedulesClient schedulesClient;
 
+    private PrecomputedItineraryStore precomputedItineraries;
+
+    @Captor
+    private ArgumentCaptor<Consumer<ScheduleKey>> scheduleChangeListener;
+
+    private SimpleMeterRegistry meterRegistry;
+
     private FlightService flightService;
 
     @BeforeEach
     void setUp(){
         MockitoAnnotations.openMocks(this);
-        flightService = new FlightService(routesClient, schedulesClient);
+        precomputedItineraries = new PrecomputedItineraryStore();
+        meterRegistry = new SimpleMeterRegistry();
+        ObservationRegistry observationRegistry = ObservationRegistry.create();
+        observationRegistry.observationConfig().observationHandler(new DefaultMeterObservationHandler(meterRegistry));
+        flightService = new FlightService(new RouteGraphService(routesClient, meterRegistry), schedulesClient,
+                new FlightSearchProperties(Duration.ofHours(2), Duration.ofHours(24), 8, 1, 3, Duration.ofDays(31), 5000, 100000, 500, 16, FlightSearchProperties.Engine.REACTIVE), precomputedItineraries,
+                new SearchResultCache(schedulesClient, meterRegistry, true, DataSize.ofMegabytes(64), Duration.ofMinutes(5)),
+                meterRegistry, observationRegistry);
+    }
+
+    @Test
+    void testPrecomputedPairIsAnsweredWithoutUpstreamCalls() {
+        RouteWithNStopDTO morning = new RouteWithNStopDTO(0, List.of(
+                new LegDTO("DUB", "WRO", LocalDateTime.parse("2018-03-01T06:00"), LocalDateTime.parse("2018-03-01T10:00"))));
+        RouteWithNStopDTO evening = new RouteWithNStopDTO(1, List.of(
+                new LegDTO("DUB", "STN", LocalDateTime.parse("2018-03-01T12:00"), LocalDateTime.parse("2018-03-01T13:00")),
+                new LegDTO("STN", "WRO", LocalDateTime.parse("2018-03-01T16:00"), LocalDateTime.parse("2018-03-01T19:00"))));
+        precomputedItineraries.put("DUB", "WRO", LocalDate.parse("2018-03-01"), 1L, List.of(evening, morning));
+
+        List<RouteWithNStopDTO> result = flightService.findFlights("DUB", "WRO",
+                LocalDateTime.parse("2018-03-01T07:00"), LocalDateTime.parse("2018-03-01T20:00")).collectList().block();
+
+        assertEquals(List.of(evening), result);
+        verify(routesClient, never()).getRoutes();
+        verify(schedulesClient, never()).getSchedule(Mockito.anyString(), Mockito.anyString(), Mockito.anyInt(), Mockito.anyInt());
     }
 
     @Test
     void testFindDirectFlights(){
-        RouteDTO route = new RouteDTO("DUB", "WRO", null, false, false, "RYANAIR", null);
+        DirectRoute route = new DirectRoute("DUB", "WRO");
         when(routesClient.getRoutes()).thenReturn(Flux.just(route));
 
         MonthScheduleDTO monthScheduleDTO = new MonthScheduleDTO(1, List.of(new DayDTO(1, List.of(new FlightDTO("99", "12:40", "16:40")))));
-        when(schedulesClient.getSchedule("DUB", "WRO", 2018, 3)).thenAnswer(invocation -> Flux.just(monthScheduleDTO));
+        when(schedulesClient.getSchedule("DUB", "WRO", 2018, 3)).thenReturn(timetable(2018, 3, monthScheduleDTO));
 
         Flux<RouteWithNStopDTO> result = flightService.findFlights("DUB", "WRO", LocalDateTime.parse("2018-03-01T12:00:00"), LocalDateTime.parse("2018-03-01T17:00:00"));
 
@@ -48,10 +108,101 @@ public class FlightServiceTest {
 
     }
 
+    @Test
+    void testRepeatedSearchIsServedFromResultCacheUntilScheduleChanges() {
+        when(routesClient.getRoutes()).thenReturn(Flux.just(new DirectRoute("DUB", "WRO")));
+        when(schedulesClient.getSchedule("DUB", "WRO", 2018, 3)).thenReturn(timetable(2018, 3,
+                new MonthScheduleDTO(3, List.of(new DayDTO(1, List.of(new FlightDTO("99", "12:40", "16:40")))))));
+        verify(schedulesClient).onChange(scheduleChangeListener.capture());
+
+        LocalDateTime departure = LocalDateTime.parse("2018-03-01T12:00");
+        LocalDateTime arrival = LocalDateTime.parse("2018-03-01T17:00");
+        assertEquals(1, flightService.findFlights("DUB", "WRO", departure, arrival).count().block());
+        assertEquals(1, flightService.findFlights("DUB", "WRO", departure.plusSeconds(30), arrival).count().block());
+        verify(schedulesClient, times(1)).getSchedule("DUB", "WRO", 2018, 3);
+
+        scheduleChangeListener.getValue().accept(new ScheduleKey("DUB", "WRO", 2018, 3));
+        assertEquals(1, flightService.findFlights("DUB", "WRO", departure, arrival).count().block());
+        verify(schedulesClient, times(2)).getSchedule("DUB", "WRO", 2018, 3);
+    }
+
+    @Test
+    void testResultComputedWhileItsScheduleChangedIsServedButNotCached() {
+        when(routesClient.getRoutes()).thenReturn(Flux.just(new DirectRoute("DUB", "WRO")));
+        verify(schedulesClient).onChange(scheduleChangeListener.capture());
+        AtomicInteger fetches = new AtomicInteger();
+        // the first read sees a refresh land mid-search; everything else is served from memory, so the search
+        // completes while the result cache is still creating its entry
+        when(schedulesClient.getSchedule("DUB", "WRO", 2018, 3)).thenReturn(Mono.defer(() -> {
+            if (fetches.incrementAndGet() == 1) {
+                scheduleChangeListener.getValue().accept(new ScheduleKey("DUB", "WRO", 2018, 3));
+            }
+            return timetable(2018, 3, new MonthScheduleDTO(3, List.of(new DayDTO(1, List.of(new FlightDTO("99", "12:40", "16:40"))))));
+        }));
+
+        LocalDateTime departure = LocalDateTime.parse("2018-03-01T12:00");
+        LocalDateTime arrival = LocalDateTime.parse("2018-03-01T17:00");
+        assertEquals(1, flightService.findFlights("DUB", "WRO", departure, arrival).count().block());
+        assertEquals(1, flightService.findFlights("DUB", "WRO", departure, arrival).count().block());
+        assertEquals(2, fetches.get());
+        assertEquals(1, flightService.findFlights("DUB", "WRO", departure, arrival).count().block());
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    void testFirstSearchStreamsItinerariesToEveryCallerWhileItRuns() {
+        when(routesClient.getRoutes()).thenReturn(Flux.just(new DirectRoute("DUB", "WRO"), new DirectRoute("DUB", "STN"), new DirectRoute("STN", "WRO")));
+        when(schedulesClient.getSchedule("DUB", "WRO", 2018, 3)).thenReturn(timetable(2018, 3,
+                new MonthScheduleDTO(3, List.of(new DayDTO(1, List.of(new FlightDTO("99", "12:40", "16:40")))))));
+        when(schedulesClient.getSchedule("DUB", "STN", 2018, 3)).thenReturn(timetable(2018, 3,
+                new MonthScheduleDTO(3, List.of(new DayDTO(1, List.of(new FlightDTO("101", "06:25", "07:35")))))));
+        Sinks.One<Timetable> secondLeg = Sinks.one();
+        when(schedulesClient.getSchedule("STN", "WRO", 2018, 3)).thenReturn(secondLeg.asMono());
+
+        LocalDateTime departure = LocalDateTime.parse("2018-03-01T06:00");
+        LocalDateTime arrival = LocalDateTime.parse("2018-03-01T17:00");
+        List<RouteWithNStopDTO> streamed = new CopyOnWriteArrayList<>();
+        CompletableFuture<List<RouteWithNStopDTO>> first = flightService.findFlights("DUB", "WRO", departure, arrival)
+                .doOnNext(streamed::add)
+                .collectList()
+                .toFuture();
+        // the direct flight reaches the caller while the connection's second leg is still loading
+        await().atMost(Duration.ofSeconds(5)).until(() -> streamed.size() == 1);
+        assertFalse(first.isDone());
+        CompletableFuture<List<RouteWithNStopDTO>> joined = flightService.findFlights("DUB", "WRO", departure, arrival).collectList().toFuture();
+
+        secondLeg.tryEmitValue(Timetable.of(YearMonth.of(2018, 3), List.of(
+                new MonthScheduleDTO(3, List.of(new DayDTO(1, List.of(new FlightDTO("102", "09:50", "13:20"))))))));
+
+        assertEquals(2, first.join().size());
+        assertEquals(first.join(), joined.join());
+        assertEquals(first.join(), flightService.findFlights("DUB", "WRO", departure, arrival).collectList().block());
+        verify(schedulesClient, times(1)).getSchedule("STN", "WRO", 2018, 3);
+    }
+
+    @Test
+    void testSearchIsTimedPerLegAndCounted() {
+        DirectRoute route1 = new DirectRoute("DUB", "STN");
+        DirectRoute route2 = new DirectRoute("STN", "WRO");
+        when(routesClient.getRoutes()).thenReturn(Flux.just(route1, route2));
+        when(schedulesClient.getSchedule("DUB", "STN", 2018, 3)).thenReturn(timetable(2018, 3,
+                new MonthScheduleDTO(3, List.of(new DayDTO(1, List.of(new FlightDTO("101", "06:25", "07:35")))))));
+        when(schedulesClient.getSchedule("STN", "WRO", 2018, 3)).thenReturn(timetable(2018, 3,
+                new MonthScheduleDTO(3, List.of(new DayDTO(1, List.of(new FlightDTO("102", "09:50", "13:20")))))));
+
+        flightService.findFlights("DUB", "WRO", LocalDateTime.parse("2018-03-01T06:00"), LocalDateTime.parse("2018-03-01T14:00")).blockLast();
+
+        assertEquals(1, meterRegistry.get("flights.search").tag("source", "live").timer().count());
+        assertEquals(1, meterRegistry.get("flights.leg.timeline").tag("leg", "0").timer().count());
+        assertEquals(1, meterRegistry.get("flights.leg.timeline").tag("leg", "1").timer().count());
+        assertEquals(1.0, meterRegistry.get("flights.search.candidates").summary().totalAmount());
+        assertEquals(1.0, meterRegistry.get("flights.search.itineraries").summary().totalAmount());
+    }
+
     @Test
     void testFindIndirectFlights() {
-        RouteDTO route1 = new RouteDTO("DUB", "STN", null, false, false, "RYANAIR", null);
-        RouteDTO route2 = new RouteDTO("STN", "WRO", null, false, false, "RYANAIR", null);
+        DirectRoute route1 = new DirectRoute("DUB", "STN");
+        DirectRoute route2 = new DirectRoute("STN", "WRO");
 
         when(routesClient.getRoutes()).thenReturn(Flux.just(route1, route2));
 
@@ -62,8 +213,8 @@ public class FlightServiceTest {
                 new DayDTO(1, List.of(new FlightDTO("102", "09:50", "13:20")))
         ));
 
-        when(schedulesClient.getSchedule("DUB", "STN", 2018, 3)).thenReturn(Flux.just(scheduleDUBtoSTN));
-        when(schedulesClient.getSchedule("STN", "WRO", 2018, 3)).thenReturn(Flux.just(scheduleSTNtoWRO));
+        when(schedulesClient.getSchedule("DUB", "STN", 2018, 3)).thenReturn(timetable(2018, 3, scheduleDUBtoSTN));
+        when(schedulesClient.getSchedule("STN", "WRO", 2018, 3)).thenReturn(timetable(2018, 3, scheduleSTNtoWRO));
 
         Flux<RouteWithNStopDTO> result = flightService.findFlights(
                 "DUB", "WRO",
@@ -93,9 +244,9 @@ public class FlightServiceTest {
 
     @Test
     void testFindDirectAndIndirectFlights() {
-        RouteDTO directRoute = new RouteDTO("DUB", "WRO", null, false, false, "RYANAIR", null);
-        RouteDTO route1 = new RouteDTO("DUB", "STN", null, false, false, "RYANAIR", null);
-        RouteDTO route2 = new RouteDTO("STN", "WRO", null, false, false, "RYANAIR", null);
+        DirectRoute directRoute = new DirectRoute("DUB", "WRO");
+        DirectRoute route1 = new DirectRoute("DUB", "STN");
+        DirectRoute route2 = new DirectRoute("STN", "WRO");
 
         when(routesClient.getRoutes()).thenReturn(Flux.just(directRoute, route1, route2));
 
@@ -109,9 +260,9 @@ public class FlightServiceTest {
                 new DayDTO(1, List.of(new FlightDTO("102", "09:50", "13:20")))
         ));
 
-        when(schedulesClient.getSchedule("DUB", "WRO", 2018, 3)).thenReturn(Flux.just(scheduleDUBtoWRO));
-        when(schedulesClient.getSchedule("DUB", "STN", 2018, 3)).thenReturn(Flux.just(scheduleDUBtoSTN));
-        when(schedulesClient.getSchedule("STN", "WRO", 2018, 3)).thenReturn(Flux.just(scheduleSTNtoWRO));
+        when(schedulesClient.getSchedule("DUB", "WRO", 2018, 3)).thenReturn(timetable(2018, 3, scheduleDUBtoWRO));
+        when(schedulesClient.getSchedule("DUB", "STN", 2018, 3)).thenReturn(timetable(2018, 3, scheduleDUBtoSTN));
+        when(schedulesClient.getSchedule("STN", "WRO", 2018, 3)).thenReturn(timetable(2018, 3, scheduleSTNtoWRO));
 
         Flux<RouteWithNStopDTO> result = flightService.findFlights(
                 "DUB", "WRO",
@@ -161,9 +312,9 @@ public class FlightServiceTest {
 
     @Test
     void testOnlyIndirectFlightAvailableDueToSchedule() {
-        RouteDTO route1 = new RouteDTO("DUB", "STN", null, false, false, "RYANAIR", null);
-        RouteDTO route2 = new RouteDTO("STN", "WRO", null, false, false, "RYANAIR", null);
-        RouteDTO route3 = new RouteDTO("DUB", "WRO", null, false, false, "RYANAIR", null);
+        DirectRoute route1 = new DirectRoute("DUB", "STN");
+        DirectRoute route2 = new DirectRoute("STN", "WRO");
+        DirectRoute route3 = new DirectRoute("DUB", "WRO");
 
         when(routesClient.getRoutes()).thenReturn(Flux.just(route1, route2, route3));
 
@@ -177,9 +328,9 @@ public class FlightServiceTest {
                 new DayDTO(1, List.of(new FlightDTO("99", "18:00", "22:00"))) // No encaja en la ventana horaria
         ));
 
-        when(schedulesClient.getSchedule("DUB", "STN", 2018, 3)).thenReturn(Flux.just(scheduleDUBtoSTN));
-        when(schedulesClient.getSchedule("STN", "WRO", 2018, 3)).thenReturn(Flux.just(scheduleSTNtoWRO));
-        when(schedulesClient.getSchedule("DUB", "WRO", 2018, 3)).thenReturn(Flux.just(scheduleDUBtoWRO));
+        when(schedulesClient.getSchedule("DUB", "STN", 2018, 3)).thenReturn(timetable(2018, 3, scheduleDUBtoSTN));
+        when(schedulesClient.getSchedule("STN", "WRO", 2018, 3)).thenReturn(timetable(2018, 3, scheduleSTNtoWRO));
+        when(schedulesClient.getSchedule("DUB", "WRO", 2018, 3)).thenReturn(timetable(2018, 3, scheduleDUBtoWRO));
 
         Flux<RouteWithNStopDTO> result = flightService.findFlights(
                 "DUB", "WRO",
@@ -209,15 +360,326 @@ public class FlightServiceTest {
         assertEquals(LocalDateTime.parse("2018-03-01T13:20"), secondLeg.arrivalDateTime());
     }
 
+    @Test
+    void testFindOvernightConnectionAcrossMonths() {
+        DirectRoute route1 = new DirectRoute("DUB", "STN");
+        DirectRoute route2 = new DirectRoute("STN", "WRO");
+
+        when(routesClient.getRoutes()).thenReturn(Flux.just(route1, route2));
+
+        MonthScheduleDTO scheduleDUBtoSTN = new MonthScheduleDTO(3, List.of(
+                new DayDTO(31, List.of(new FlightDTO("101", "20:00", "21:10")))
+        ));
+        MonthScheduleDTO scheduleSTNtoWRO = new MonthScheduleDTO(4, List.of(
+                new DayDTO(1, List.of(new FlightDTO("102", "06:00", "09:30")))
+        ));
+
+        when(schedulesClient.getSchedule("DUB", "STN", 2018, 3)).thenReturn(timetable(2018, 3, scheduleDUBtoSTN));
+        when(schedulesClient.getSchedule("DUB", "STN", 2018, 4)).thenReturn(Mono.just(Timetable.EMPTY));
+        when(schedulesClient.getSchedule("STN", "WRO", 2018, 3)).thenReturn(Mono.just(Timetable.EMPTY));
+        when(schedulesClient.getSchedule("STN", "WRO", 2018, 4)).thenReturn(timetable(2018, 4, scheduleSTNtoWRO));
+
+        List<RouteWithNStopDTO> flights = flightService.findFlights(
+                "DUB", "WRO",
+                LocalDateTime.parse("2018-03-31T18:00"),
+                LocalDateTime.parse("2018-04-01T12:00")
+        ).collectList().block();
+
+        assertNotNull(flights);
+        assertEquals(1, flights.size());
+        assertEquals(LocalDateTime.parse("2018-03-31T20:00"), flights.getFirst().legs().get(0).departureDateTime());
+        assertEquals(LocalDateTime.parse("2018-04-01T06:00"), flights.getFirst().legs().get(1).departureDateTime());
+        assertEquals(LocalDateTime.parse("2018-04-01T09:30"), flights.getFirst().legs().get(1).arrivalDateTime());
+    }
+
+    @Test
+    void testFindTwoStopFlightsWhenRequested() {
+        DirectRoute route1 = new DirectRoute("DUB", "STN");
+        DirectRoute route2 = new DirectRoute("STN", "BGY");
+        DirectRoute route3 = new DirectRoute("BGY", "WRO");
+
+        when(routesClient.getRoutes()).thenReturn(Flux.just(route1, route2, route3));
+
+        MonthScheduleDTO scheduleDUBtoSTN = new MonthScheduleDTO(3, List.of(
+                new DayDTO(1, List.of(new FlightDTO("101", "06:25", "07:35")))
+        ));
+        MonthScheduleDTO scheduleSTNtoBGY = new MonthScheduleDTO(3, List.of(
+                new DayDTO(1, List.of(new FlightDTO("102", "09:50", "12:20")))
+        ));
+        MonthScheduleDTO scheduleBGYtoWRO = new MonthScheduleDTO(3, List.of(
+                new DayDTO(1, List.of(new FlightDTO("103", "14:30", "16:10")))
+        ));
+
+        when(schedulesClient.getSchedule("DUB", "STN", 2018, 3)).thenReturn(timetable(2018, 3, scheduleDUBtoSTN));
+        when(schedulesClient.getSchedule("STN", "BGY", 2018, 3)).thenReturn(timetable(2018, 3, scheduleSTNtoBGY));
+        when(schedulesClient.getSchedule("BGY", "WRO", 2018, 3)).thenReturn(timetable(2018, 3, scheduleBGYtoWRO));
+
+        assertThrows(RouteNotFoundException.class, () ->
+                flightService.findFlights("DUB", "WRO", LocalDateTime.parse("2018-03-01T06:00"), LocalDateTime.parse("2018-03-01T18:00")).blockLast()
+        );
+
+        List<RouteWithNStopDTO> flights = flightService.findFlights(
+                "DUB", "WRO",
+                LocalDateTime.parse("2018-03-01T06:00"),
+                LocalDateTime.parse("2018-03-01T18:00"),
+                2
+        ).collectList().block();
+
+        assertNotNull(flights);
+        assertEquals(1, flights.size());
+        assertEquals(2, flights.getFirst().stops());
+        assertEquals(List.of("DUB", "STN", "BGY"), flights.getFirst().legs().stream().map(LegDTO::departureAirport).toList());
+    }
+
+    @Test
+    void testLaterLegsAreNotFetchedWhenFirstLegHasNoFeasibleFlight() {
+        DirectRoute route1 = new DirectRoute("DUB", "STN");
+        DirectRoute route2 = new DirectRoute("STN", "WRO");
+
+        when(routesClient.getRoutes()).thenReturn(Flux.just(route1, route2));
+
+        MonthScheduleDTO scheduleDUBtoSTN = new MonthScheduleDTO(3, List.of(
+                new DayDTO(1, List.of(new FlightDTO("101", "12:25", "13:35")))
+        ));
+        when(schedulesClient.getSchedule("DUB", "STN", 2018, 3)).thenReturn(timetable(2018, 3, scheduleDUBtoSTN));
+
+        assertThrows(NoSchedulesFoundException.class, () ->
+                flightService.findFlights("DUB", "WRO", LocalDateTime.parse("2018-03-01T06:00"), LocalDateTime.parse("2018-03-01T14:00")).blockLast()
+        );
+        verify(schedulesClient, never()).getSchedule("STN", "WRO", 2018, 3);
+    }
+
+    @Test
+    void testVirtualThreadEngineMatchesReactiveEngine() {
+        FlightService virtualThreadService = new FlightService(new RouteGraphService(routesClient, meterRegistry), schedulesClient,
+                new FlightSearchProperties(Duration.ofHours(2), Duration.ofHours(24), 8, 1, 3, Duration.ofDays(31), 5000, 100000, 500, 16, FlightSearchProperties.Engine.VIRTUAL_THREADS), precomputedItineraries,
+                new SearchResultCache(schedulesClient, meterRegistry, false, DataSize.ofMegabytes(64), Duration.ofMinutes(5)),
+                meterRegistry, ObservationRegistry.NOOP);
+        when(routesClient.getRoutes()).thenReturn(Flux.just(new DirectRoute("DUB", "WRO"), new DirectRoute("DUB", "STN"),
+                new DirectRoute("STN", "WRO"), new DirectRoute("DUB", "BGY"), new DirectRoute("BGY", "WRO")));
+        when(schedulesClient.getSchedule("DUB", "WRO", 2018, 3)).thenReturn(timetable(2018, 3,
+                new MonthScheduleDTO(3, List.of(new DayDTO(1, List.of(new FlightDTO("99", "12:40", "16:40")))))));
+        when(schedulesClient.getSchedule("DUB", "STN", 2018, 3)).thenReturn(timetable(2018, 3,
+                new MonthScheduleDTO(3, List.of(new DayDTO(1, List.of(new FlightDTO("101", "06:25", "07:35")))))));
+        when(schedulesClient.getSchedule("STN", "WRO", 2018, 3)).thenReturn(timetable(2018, 3,
+                new MonthScheduleDTO(3, List.of(new DayDTO(1, List.of(new FlightDTO("102", "09:50", "13:20")))))));
+        when(schedulesClient.getSchedule("DUB", "BGY", 2018, 3)).thenReturn(timetable(2018, 3,
+                new MonthScheduleDTO(3, List.of(new DayDTO(1, List.of(new FlightDTO("103", "15:00", "17:30")))))));
+
+        LocalDateTime departure = LocalDateTime.parse("2018-03-01T06:00");
+        LocalDateTime arrival = LocalDateTime.parse("2018-03-01T17:00");
+        Comparator<RouteWithNStopDTO> byStops = Comparator.comparingInt(RouteWithNStopDTO::stops);
+        List<RouteWithNStopDTO> reactive = flightService.findFlights("DUB", "WRO", departure, arrival).sort(byStops).collectList().block();
+        List<RouteWithNStopDTO> virtualThreads = virtualThreadService.findFlights("DUB", "WRO", departure, arrival).sort(byStops).collectList().block();
+
+        assertEquals(2, reactive.size());
+        assertEquals(reactive, virtualThreads);
+        verify(schedulesClient, never()).getSchedule("BGY", "WRO", 2018, 3);
+        assertThrows(RouteNotFoundException.class, () ->
+                virtualThreadService.findFlights("WRO", "DUB", departure, arrival).blockLast());
+        virtualThreadService.close();
+    }
+
+    @Test
+    void testLimitedSearchStopsBeforeRoutesThatCannotBeatTheBest() {
+        when(routesClient.getRoutes()).thenReturn(Flux.just(new DirectRoute("DUB", "WRO"), new DirectRoute("DUB", "STN"), new DirectRoute("STN", "WRO")));
+        when(schedulesClient.getSchedule("DUB", "WRO", 2018, 3)).thenReturn(timetable(2018, 3,
+                new MonthScheduleDTO(3, List.of(new DayDTO(1, List.of(new FlightDTO("98", "07:00", "11:00"), new FlightDTO("99", "12:40", "16:40")))))));
+        // lands too late for any connection to arrive before 11:00
+        when(schedulesClient.getSchedule("DUB", "STN", 2018, 3)).thenReturn(timetable(2018, 3,
+                new MonthScheduleDTO(3, List.of(new DayDTO(1, List.of(new FlightDTO("101", "06:25", "09:35")))))));
+
+        List<RouteWithNStopDTO> flights = flightService.findFlights("DUB", "WRO",
+                LocalDateTime.parse("2018-03-01T06:00"), LocalDateTime.parse("2018-03-01T18:00"), null, ItineraryOrder.EARLIEST_ARRIVAL, 1).collectList().block();
+
+        assertNotNull(flights);
+        assertEquals(1, flights.size());
+        assertEquals(LocalDateTime.parse("2018-03-01T11:00"), flights.getFirst().legs().getFirst().arrivalDateTime());
+        verify(schedulesClient, never()).getSchedule("STN", "WRO", 2018, 3);
+    }
+
+    @Test
+    void testSortedSearchReturnsEveryItineraryInOrder() {
+        when(routesClient.getRoutes()).thenReturn(Flux.just(new DirectRoute("DUB", "WRO"), new DirectRoute("DUB", "STN"), new DirectRoute("STN", "WRO")));
+        when(schedulesClient.getSchedule("DUB", "WRO", 2018, 3)).thenReturn(timetable(2018, 3,
+                new MonthScheduleDTO(3, List.of(new DayDTO(1, List.of(new FlightDTO("98", "07:00", "11:00"), new FlightDTO("99", "12:40", "16:00")))))));
+        when(schedulesClient.getSchedule("DUB", "STN", 2018, 3)).thenReturn(timetable(2018, 3,
+                new MonthScheduleDTO(3, List.of(new DayDTO(1, List.of(new FlightDTO("101", "06:25", "07:35")))))));
+        when(schedulesClient.getSchedule("STN", "WRO", 2018, 3)).thenReturn(timetable(2018, 3,
+                new MonthScheduleDTO(3, List.of(new DayDTO(1, List.of(new FlightDTO("102", "09:50", "11:20")))))));
+
+        List<RouteWithNStopDTO> flights = flightService.findFlights("DUB", "WRO",
+                LocalDateTime.parse("2018-03-01T06:00"), LocalDateTime.parse("2018-03-01T18:00"), null, ItineraryOrder.SHORTEST_DURATION, null).collectList().block();
+
+        assertNotNull(flights);
+        assertEquals(List.of("16:00", "11:00", "11:20"), flights.stream()
+                .map(itinerary -> itinerary.legs().getLast().arrivalDateTime().toLocalTime().toString())
+                .toList());
+        assertThrows(InvalidSearchException.class, () -> ItineraryOrder.parse("cheapest"));
+    }
+
+    @Test
+    void testBatchReturnsResultsPerQuery() {
+        DirectRoute route1 = new DirectRoute("DUB", "STN");
+        DirectRoute route2 = new DirectRoute("STN", "WRO");
+
+        when(routesClient.getRoutes()).thenReturn(Flux.just(route1, route2));
+
+        MonthScheduleDTO scheduleDUBtoSTN = new MonthScheduleDTO(3, List.of(
+                new DayDTO(1, List.of(new FlightDTO("101", "06:25", "07:35")))
+        ));
+        MonthScheduleDTO scheduleSTNtoWRO = new MonthScheduleDTO(3, List.of(
+                new DayDTO(1, List.of(new FlightDTO("102", "09:50", "13:20")))
+        ));
+
+        when(schedulesClient.getSchedule("DUB", "STN", 2018, 3)).thenReturn(timetable(2018, 3, scheduleDUBtoSTN));
+        when(schedulesClient.getSchedule("STN", "WRO", 2018, 3)).thenReturn(timetable(2018, 3, scheduleSTNtoWRO));
+
+        List<InterconnectionQueryDTO> queries = List.of(
+                new InterconnectionQueryDTO("DUB", "WRO", LocalDateTime.parse("2018-03-01T06:00"), LocalDateTime.parse("2018-03-01T14:00"), null),
+                new InterconnectionQueryDTO("STN", "WRO", LocalDateTime.parse("2018-03-01T06:00"), LocalDateTime.parse("2018-03-01T14:00"), 0),
+                new InterconnectionQueryDTO("DUB", "MAD", LocalDateTime.parse("2018-03-01T06:00"), LocalDateTime.parse("2018-03-01T14:00"), null)
+        );
+
+        List<InterconnectionResultDTO> results = flightService.findFlightsBatch(queries).collectList().block();
+
+        assertNotNull(results);
+        assertEquals(3, results.size());
+        results = results.stream().sorted(Comparator.comparingInt(InterconnectionResultDTO::index)).toList();
+
+        assertEquals(1, results.get(0).routes().size());
+        assertEquals(1, results.get(0).routes().getFirst().stops());
+        assertEquals(1, results.get(1).routes().size());
+        assertEquals(0, results.get(1).routes().getFirst().stops());
+        assertTrue(results.get(2).routes().isEmpty());
+        assertNotNull(results.get(2).error());
+    }
+
+    @Test
+    void testSearchWindowLongerThanTheMaximumIsRejected() {
+        assertThrows(InvalidSearchException.class, () -> flightService.findFlights("DUB", "WRO",
+                LocalDateTime.parse("2018-03-01T06:00"), LocalDateTime.parse("2019-03-01T06:00")).blockLast());
+        verify(routesClient, never()).getRoutes();
+
+        List<InterconnectionResultDTO> results = flightService.findFlightsBatch(List.of(new InterconnectionQueryDTO("DUB", "WRO",
+                LocalDateTime.parse("2018-03-01T06:00"), LocalDateTime.parse("2028-03-01T06:00"), null))).collectList().block();
+        assertNotNull(results);
+        assertEquals("The search window may span at most 31 days", results.getFirst().error());
+    }
+
+    @Test
+    void testDenseMultiDayScheduleOnlyConnectsWithinTheMaximumConnectionTime() {
+        when(routesClient.getRoutes()).thenReturn(Flux.just(new DirectRoute("DUB", "STN"), new DirectRoute("STN", "WRO")));
+        when(schedulesClient.getSchedule("DUB", "STN", 2018, 3)).thenReturn(timetable(2018, 3, hourly(7)));
+        when(schedulesClient.getSchedule("STN", "WRO", 2018, 3)).thenReturn(timetable(2018, 3, hourly(7)));
+
+        List<RouteWithNStopDTO> flights = flightService.findFlights("DUB", "WRO",
+                LocalDateTime.parse("2018-03-01T00:00"), LocalDateTime.parse("2018-03-08T00:00")).collectList().block();
+
+        // each of the 165 feasible inbound flights connects to the 22 departures of the next 24 hours, fewer near the end
+        assertNotNull(flights);
+        assertEquals(143 * 22 + 21 * 22 / 2, flights.size());
+        assertTrue(flights.stream().allMatch(itinerary -> {
+            Duration layover = Duration.between(itinerary.legs().get(0).arrivalDateTime(), itinerary.legs().get(1).departureDateTime());
+            return layover.compareTo(Duration.ofHours(2)) >= 0 && layover.compareTo(Duration.ofHours(24)) <= 0;
+        }));
+    }
+
+    @Test
+    void testSearchesAreCappedAtTheMaximumItineraries() {
+        FlightService cappedService = new FlightService(new RouteGraphService(routesClient, meterRegistry), schedulesClient,
+                new FlightSearchProperties(Duration.ofHours(2), Duration.ofHours(24), 8, 1, 3, Duration.ofDays(31), 100, 100000, 500, 16, FlightSearchProperties.Engine.REACTIVE), precomputedItineraries,
+                new SearchResultCache(schedulesClient, meterRegistry, false, DataSize.ofMegabytes(64), Duration.ofMinutes(5)),
+                meterRegistry, ObservationRegistry.NOOP);
+        when(routesClient.getRoutes()).thenReturn(Flux.just(new DirectRoute("DUB", "STN"), new DirectRoute("STN", "WRO")));
+        when(schedulesClient.getSchedule("DUB", "STN", 2018, 3)).thenReturn(timetable(2018, 3, hourly(7)));
+        when(schedulesClient.getSchedule("STN", "WRO", 2018, 3)).thenReturn(timetable(2018, 3, hourly(7)));
+        LocalDateTime departure = LocalDateTime.parse("2018-03-01T00:00");
+        LocalDateTime arrival = LocalDateTime.parse("2018-03-08T00:00");
+
+        assertEquals(100, cappedService.findFlights("DUB", "WRO", departure, arrival).count().block());
+        assertEquals(100, cappedService.findFlights("DUB", "WRO", departure, arrival, null, ItineraryOrder.EARLIEST_ARRIVAL, 1000).count().block());
+        assertEquals(10, cappedService.findFlights("DUB", "WRO", departure, arrival, null, ItineraryOrder.EARLIEST_ARRIVAL, 10).count().block());
+    }
+
+    @Test
+    void testTwoStopWeekLongSearchKeepsPartialItinerariesBounded() {
+        FlightService boundedService = new FlightService(new RouteGraphService(routesClient, meterRegistry), schedulesClient,
+                new FlightSearchProperties(Duration.ofHours(2), Duration.ofHours(24), 8, 1, 3, Duration.ofDays(31), 5000, 50000, 500, 16, FlightSearchProperties.Engine.REACTIVE), precomputedItineraries,
+                new SearchResultCache(schedulesClient, meterRegistry, false, DataSize.ofMegabytes(64), Duration.ofMinutes(5)),
+                meterRegistry, ObservationRegistry.NOOP);
+        when(routesClient.getRoutes()).thenReturn(Flux.just(new DirectRoute("DUB", "STN"), new DirectRoute("STN", "BGY"), new DirectRoute("BGY", "WRO")));
+        when(schedulesClient.getSchedule("DUB", "STN", 2018, 3)).thenReturn(timetable(2018, 3, hourly(7)));
+        when(schedulesClient.getSchedule("STN", "BGY", 2018, 3)).thenReturn(timetable(2018, 3, hourly(7)));
+        when(schedulesClient.getSchedule("BGY", "WRO", 2018, 3)).thenReturn(timetable(2018, 3, hourly(7)));
+        LocalDateTime departure = LocalDateTime.parse("2018-03-01T00:00");
+        LocalDateTime arrival = LocalDateTime.parse("2018-03-08T00:00");
+
+        // every stopover multiplies the partial itineraries by at most the 22 departures of the next 24 hours
+        assertEquals(5000, flightService.findFlights("DUB", "WRO", departure, arrival, 2).count().block());
+        assertEquals(67760, meterRegistry.get("flights.leg.partials").summary().max());
+
+        assertThrows(InvalidSearchException.class, () -> boundedService.findFlights("DUB", "WRO", departure, arrival, 2).blockLast());
+    }
+
+    @Test
+    void testBatchQueriesSkipLaterLegsAndReportFailuresPerQuery() {
+        when(routesClient.getRoutes()).thenReturn(Flux.just(new DirectRoute("DUB", "STN"), new DirectRoute("STN", "WRO"), new DirectRoute("STN", "BGY")));
+        when(schedulesClient.getSchedule("DUB", "STN", 2018, 3)).thenReturn(timetable(2018, 3, new MonthScheduleDTO(3, List.of(
+                new DayDTO(1, List.of(new FlightDTO("101", "12:25", "13:35")))))));
+        when(schedulesClient.getSchedule("STN", "BGY", 2018, 3)).thenReturn(Mono.error(new IllegalStateException("Upstream down")));
+
+        List<InterconnectionResultDTO> results = flightService.findFlightsBatch(List.of(
+                new InterconnectionQueryDTO("DUB", "WRO", LocalDateTime.parse("2018-03-01T06:00"), LocalDateTime.parse("2018-03-01T14:00"), null),
+                new InterconnectionQueryDTO("STN", "BGY", LocalDateTime.parse("2018-03-01T06:00"), LocalDateTime.parse("2018-03-01T14:00"), 0)
+        )).collectList().block();
+
+        assertNotNull(results);
+        results = results.stream().sorted(Comparator.comparingInt(InterconnectionResultDTO::index)).toList();
+        assertEquals("No schedules found for requested route and dates", results.get(0).error());
+        // unexpected failures are reported as the error handler would answer them, without their details
+        assertEquals("Internal server error", results.get(1).error());
+        verify(schedulesClient, never()).getSchedule("STN", "WRO", 2018, 3);
+    }
+
+    @Test
+    void testBatchFetchesEachFirstLegMonthOnceBeforeStartingItsQueries() {
+        when(routesClient.getRoutes()).thenReturn(Flux.just(new DirectRoute("DUB", "STN"), new DirectRoute("STN", "WRO")));
+        Sinks.One<Timetable> firstLeg = Sinks.one();
+        when(schedulesClient.getSchedule("DUB", "STN", 2018, 3)).thenReturn(firstLeg.asMono());
+        when(schedulesClient.getSchedule("STN", "WRO", 2018, 3)).thenReturn(timetable(2018, 3, new MonthScheduleDTO(3, List.of(
+                new DayDTO(1, List.of(new FlightDTO("102", "09:50", "13:20")))))));
+        LocalDateTime departure = LocalDateTime.parse("2018-03-01T06:00");
+        LocalDateTime arrival = LocalDateTime.parse("2018-03-01T14:00");
+
+        CompletableFuture<List<InterconnectionResultDTO>> results = flightService.findFlightsBatch(List.of(
+                new InterconnectionQueryDTO("DUB", "WRO", departure, arrival, 1),
+                new InterconnectionQueryDTO("DUB", "STN", departure, arrival, 0)
+        )).collectList().toFuture();
+
+        // both queries wait for the one fetch of their shared first-leg month
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> verify(schedulesClient, times(1)).getSchedule("DUB", "STN", 2018, 3));
+        assertFalse(results.isDone());
+        verify(schedulesClient, never()).getSchedule("STN", "WRO", 2018, 3);
+
+        firstLeg.tryEmitValue(Timetable.of(YearMonth.of(2018, 3), List.of(new MonthScheduleDTO(3, List.of(
+                new DayDTO(1, List.of(new FlightDTO("101", "06:25", "07:35"))))))));
+
+        List<InterconnectionResultDTO> sorted = results.join().stream().sorted(Comparator.comparingInt(InterconnectionResultDTO::index)).toList();
+        assertEquals(1, sorted.get(0).routes().size());
+        assertEquals(1, sorted.get(0).routes().getFirst().stops());
+        assertEquals(1, sorted.get(1).routes().size());
+    }
+
     @Test
     void testNotExistingRouteShouldThrowRouteNotFoundException() {
-        RouteDTO route1 = new RouteDTO("DUB", "STN", null, false, false, "RYANAIR", null);
+        DirectRoute route1 = new DirectRoute("DUB", "STN");
         when(routesClient.getRoutes()).thenReturn(Flux.just(route1));
 
         MonthScheduleDTO scheduleDUBtoSTN = new MonthScheduleDTO(3, List.of(
                 new DayDTO(1, List.of(new FlightDTO("101", "06:25", "07:35")))
         ));
-        when(schedulesClient.getSchedule("DUB", "STN", 2018, 3)).thenReturn(Flux.just(scheduleDUBtoSTN));
+        when(schedulesClient.getSchedule("DUB", "STN", 2018, 3)).thenReturn(timetable(2018, 3, scheduleDUBtoSTN));
 
         assertThrows(RouteNotFoundException.class, () ->
                 flightService.findFlights("DUB", "MAD", LocalDateTime.parse("2018-03-01T06:00"), LocalDateTime.parse("2018-03-01T14:00")).blockLast()
@@ -226,19 +688,71 @@ public class FlightServiceTest {
 
     @Test
     void testNotExistingSchedulesShouldTrowNoSchedulesFoundException() {
-        RouteDTO route1 = new RouteDTO("DUB", "STN", null, false, false, "RYANAIR", null);
-        RouteDTO route2 = new RouteDTO("STN", "WRO", null, false, false, "RYANAIR", null);
+        DirectRoute route1 = new DirectRoute("DUB", "STN");
+        DirectRoute route2 = new DirectRoute("STN", "WRO");
 
         when(routesClient.getRoutes()).thenReturn(Flux.just(route1, route2));
 
         MonthScheduleDTO scheduleDUBtoSTN = new MonthScheduleDTO(3, List.of(
                 new DayDTO(1, List.of(new FlightDTO("101", "06:25", "07:35")))
         ));
-        when(schedulesClient.getSchedule("DUB", "STN", 2018, 3)).thenReturn(Flux.just(scheduleDUBtoSTN));
-        when(schedulesClient.getSchedule("STN", "WRO", 2018, 3)).thenReturn(Flux.empty());
+        when(schedulesClient.getSchedule("DUB", "STN", 2018, 3)).thenReturn(timetable(2018, 3, scheduleDUBtoSTN));
+        when(schedulesClient.getSchedule("STN", "WRO", 2018, 3)).thenReturn(Mono.just(Timetable.EMPTY));
 
         assertThrows(NoSchedulesFoundException.class, () ->
                 flightService.findFlights("DUB", "WRO", LocalDateTime.parse("2018-03-01T06:00"), LocalDateTime.parse("2018-03-01T14:00")).blockLast()
         );
     }
+
+    @Test
+    void testSchedulesAreFetchedWithThePriorityAndRequestOfTheSearch() {
+        FetchScheduler scheduler = new FetchScheduler("schedules", 1, 100, 10_000, 1, Duration.ofSeconds(5));
+        Sinks.Empty<Void> blocker = Sinks.empty();
+        scheduler.schedule(blocker.asMono()).subscribe();
+        when(routesClient.getRoutes()).thenReturn(Flux.just(new DirectRoute("DUB", "WRO"), new DirectRoute("DUB", "STN")));
+        when(schedulesClient.getSchedule("DUB", "WRO", 2018, 3)).thenReturn(scheduler.schedule(timetable(2018, 3,
+                new MonthScheduleDTO(3, List.of(new DayDTO(1, List.of(new FlightDTO("99", "12:40", "16:40"))))))));
+        when(schedulesClient.getSchedule("DUB", "STN", 2018, 3)).thenReturn(scheduler.schedule(timetable(2018, 3,
+                new MonthScheduleDTO(3, List.of(new DayDTO(1, List.of(new FlightDTO("101", "12:25", "13:35"))))))));
+        LocalDateTime departure = LocalDateTime.parse("2018-03-01T12:00");
+        LocalDateTime arrival = LocalDateTime.parse("2018-03-01T17:00");
+
+        Mono<List<RouteWithNStopDTO>> toWroclaw = flightService.findFlights("DUB", "WRO", departure, arrival, 0).collectList().cache();
+        Mono<List<RouteWithNStopDTO>> toStansted = flightService.findFlights("DUB", "STN", departure, arrival, 0).collectList().cache();
+        Mono<List<InterconnectionResultDTO>> batch = flightService.findFlightsBatch(List.of(
+                new InterconnectionQueryDTO("DUB", "WRO", departure, arrival.plusHours(1), 0))).collectList().cache();
+        toWroclaw.subscribe();
+        toStansted.subscribe();
+        batch.subscribe();
+
+        // each search queues as its own request, behind the call holding the only permit
+        assertEquals(2, scheduler.queued(FetchScheduler.Priority.INTERACTIVE));
+        assertEquals(2, scheduler.queuedRequests(FetchScheduler.Priority.INTERACTIVE));
+        assertEquals(1, scheduler.queued(FetchScheduler.Priority.BATCH));
+
+        blocker.tryEmitEmpty();
+        assertEquals(1, toWroclaw.block(Duration.ofSeconds(5)).size());
+        assertEquals(1, toStansted.block(Duration.ofSeconds(5)).size());
+        assertEquals(1, batch.block(Duration.ofSeconds(5)).getFirst().routes().size());
+        assertEquals(0, scheduler.queued());
+    }
+
+    /**
+     * A March schedule with a 50-minute flight every hour on each of the first {@code days} days.
+     */
+    private static MonthScheduleDTO hourly(int days) {
+        List<DayDTO> schedule = new ArrayList<>();
+        for (int day = 1; day <= days; day++) {
+            List<FlightDTO> flights = new ArrayList<>();
+            for (int hour = 0; hour < 24; hour++) {
+                flights.add(new FlightDTO(String.valueOf(hour), String.format("%02d:00", hour), String.format("%02d:50", hour)));
+            }
+            schedule.add(new DayDTO(day, flights));
+        }
+        return new MonthScheduleDTO(3, schedule);
+    }
+
+    private static Mono<Timetable> timetable(int year, int month, MonthScheduleDTO schedule) {
+        return Mono.just(Timetable.of(YearMonth.of(year, month), List.of(schedule)));
+    }
 }
@@ -0,0 +1,87 @@
+package com.ryanair.task.interconnected_flights;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ryanair.task.interconnected_flights.controller.ItineraryJsonEncoder;
+import com.ryanair.task.interconnected_flights.dto.LegDTO;
+import com.ryanair.task.interconnected_flights.dto.RouteWithNStopDTO;
+import com.ryanair.task.interconnected_flights.exception.NoSchedulesFoundException;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ItineraryJsonEncoderTest {
+
+    private static final ResolvableType ITINERARY = ResolvableType.forClass(RouteWithNStopDTO.class);
+    private static final List<RouteWithNStopDTO> ITINERARIES = List.of(
+            new RouteWithNStopDTO(0, List.of(
+                    new LegDTO("DUB", "WRO", LocalDateTime.parse("2018-03-01T06:25"), LocalDateTime.parse("2018-03-01T10:05")))),
+            new RouteWithNStopDTO(1, List.of(
+                    new LegDTO("DUB", "STN", LocalDateTime.parse("2018-03-01T07:00"), LocalDateTime.parse("2018-03-01T08:10")),
+                    new LegDTO("STN", "WRO", LocalDateTime.parse("2018-03-01T23:59:59.5"), LocalDateTime.parse("2018-03-02T03:00")))),
+            new RouteWithNStopDTO(0, List.of(new LegDTO("D\"B", null, LocalDateTime.parse("2018-03-01T06:25"), null))));
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final ItineraryJsonEncoder encoder = new ItineraryJsonEncoder();
+
+    @Test
+    void testJsonArrayMatchesJackson() throws Exception {
+        assertEquals(objectMapper.writeValueAsString(ITINERARIES), encode(Flux.fromIterable(ITINERARIES), MediaType.APPLICATION_JSON));
+        assertEquals("[]", encode(Flux.empty(), MediaType.APPLICATION_JSON));
+        assertEquals(objectMapper.writeValueAsString(ITINERARIES.get(1)), encode(Mono.just(ITINERARIES.get(1)), MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    void testFailedSearchWritesNothingBeforeTheError() {
+        List<String> written = new ArrayList<>();
+        Flux<DataBuffer> encoded = encoder.encode(Flux.error(new NoSchedulesFoundException("No schedules found")),
+                        DefaultDataBufferFactory.sharedInstance, ITINERARY, MediaType.APPLICATION_JSON, Map.of())
+                .doOnNext(buffer -> written.add(buffer.toString(StandardCharsets.UTF_8)));
+
+        assertThrows(NoSchedulesFoundException.class, encoded::blockLast);
+        assertEquals(List.of(), written);
+    }
+
+    @Test
+    void testNdjsonWritesOneItineraryPerLine() throws Exception {
+        StringBuilder expected = new StringBuilder();
+        for (RouteWithNStopDTO itinerary : ITINERARIES) {
+            expected.append(objectMapper.writeValueAsString(itinerary)).append('\n');
+        }
+        assertEquals(expected.toString(), encode(Flux.fromIterable(ITINERARIES), MediaType.APPLICATION_NDJSON));
+    }
+
+    @Test
+    void testOnlyEncodesItinerariesAsJson() {
+        assertTrue(encoder.canEncode(ITINERARY, MediaType.APPLICATION_JSON));
+        assertTrue(encoder.canEncode(ITINERARY, MediaType.APPLICATION_NDJSON));
+        assertFalse(encoder.canEncode(ITINERARY, MediaType.TEXT_EVENT_STREAM));
+        assertFalse(encoder.canEncode(ResolvableType.forClass(LegDTO.class), MediaType.APPLICATION_JSON));
+    }
+
+    private String encode(Publisher<RouteWithNStopDTO> input, MediaType mediaType) {
+        return encoder.encode(input, DefaultDataBufferFactory.sharedInstance, ITINERARY, mediaType, Map.of())
+                .map(buffer -> {
+                    String chunk = buffer.toString(StandardCharsets.UTF_8);
+                    DataBufferUtils.release(buffer);
+                    return chunk;
+                })
+                .collect(Collectors.joining())
+                .block();
+    }
+}
@@ -0,0 +1,53 @@
+package com.ryanair.task.interconnected_flights;
+
+import com.ryanair.task.interconnected_flights.model.FlightRoute;
+import com.ryanair.task.interconnected_flights.model.RouteGraph;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RouteGraphTest {
+
+    private final RouteGraph graph = RouteGraph.builder()
+            .addRoute("DUB", "WRO")
+            .addRoute("DUB", "STN")
+            .addRoute("STN", "WRO")
+            .addRoute("STN", "BCN")
+            .addRoute("BCN", "WRO")
+            .addRoute("WRO", "DUB")
+            .addRoute("DUB", "WRO")
+            .build();
+
+    @Test
+    void testFindsLoopFreeRoutesFewestStopsFirst() {
+        List<List<String>> routes = graph.findRoutes("DUB", "WRO", 2).stream().map(FlightRoute::airports).map(List::copyOf).toList();
+
+        assertEquals(List.of(
+                List.of("DUB", "WRO"),
+                List.of("DUB", "STN", "WRO"),
+                List.of("DUB", "STN", "BCN", "WRO")), routes);
+    }
+
+    @Test
+    void testRespectsMaxStops() {
+        assertEquals(1, graph.findRoutes("DUB", "WRO", 0).size());
+        assertEquals(2, graph.findRoutes("DUB", "WRO", 1).size());
+    }
+
+    @Test
+    void testUnknownAirportsHaveNoRoutes() {
+        assertTrue(graph.findRoutes("DUB", "XXX", 3).isEmpty());
+        assertTrue(graph.findRoutes("XXX", "DUB", 3).isEmpty());
+        assertFalse(graph.hasRoute("XXX", "DUB"));
+    }
+
+    @Test
+    void testDeduplicatesRoutesAndIndexesBothDirections() {
+        assertEquals(6, graph.routeCount());
+        assertEquals(Set.of("DUB", "STN", "BCN"), Set.copyOf(graph.originsTo("WRO")));
+        assertEquals(Set.of("WRO", "STN"), Set.copyOf(graph.destinationsFrom("DUB")));
+    }
+}
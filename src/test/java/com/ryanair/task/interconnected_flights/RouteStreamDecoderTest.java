@@ -0,0 +1,54 @@
+package com.ryanair.task.interconnected_flights;
+
+import com.ryanair.task.interconnected_flights.client.RouteStreamDecoder;
+import com.ryanair.task.interconnected_flights.model.DirectRoute;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.codec.DecodingException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RouteStreamDecoderTest {
+
+    private static final byte[] PAYLOAD = """
+            [
+              {"airportFrom":"DUB","airportTo":"WRO","connectingAirport":null,"newRoute":false,"seasonalRoute":false,"operator":"RYANAIR","group":"CITY","similarArrivalAirportCodes":[],"tags":{"a":["b"]}},
+              {"airportFrom":"DUB","airportTo":"BCN","connectingAirport":"STN","newRoute":false,"seasonalRoute":false,"operator":"RYANAIR","group":"CITY"},
+              {"airportFrom":"DUB","airportTo":"STN","connectingAirport":null,"newRoute":true,"seasonalRoute":false,"operator":"AER_LINGUS","group":"CITY"},
+              {"group":"LEISURE","operator":"RYANAIR","airportTo":"DUB","airportFrom":"WRO"}
+            ]
+            """.getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void testKeepsOnlyDirectRyanairRoutes() {
+        RouteStreamDecoder decoder = new RouteStreamDecoder();
+        List<DirectRoute> routes = new ArrayList<>(decoder.feed(PAYLOAD, 0, PAYLOAD.length));
+        routes.addAll(decoder.endOfInput());
+
+        assertEquals(List.of(new DirectRoute("DUB", "WRO"), new DirectRoute("WRO", "DUB")), routes);
+        assertSame(routes.get(0).origin(), routes.get(1).destination());
+    }
+
+    @Test
+    void testDecodesPayloadSplitAtEveryByte() {
+        RouteStreamDecoder decoder = new RouteStreamDecoder();
+        List<DirectRoute> routes = new ArrayList<>();
+        for (int i = 0; i < PAYLOAD.length; i++) {
+            routes.addAll(decoder.feed(PAYLOAD, i, 1));
+        }
+        routes.addAll(decoder.endOfInput());
+
+        assertEquals(List.of(new DirectRoute("DUB", "WRO"), new DirectRoute("WRO", "DUB")), routes);
+    }
+
+    @Test
+    void testRejectsTruncatedPayload() {
+        RouteStreamDecoder decoder = new RouteStreamDecoder();
+        decoder.feed(PAYLOAD, 0, PAYLOAD.length / 2);
+
+        assertThrows(DecodingException.class, decoder::endOfInput);
+    }
+}
@@ -0,0 +1,171 @@
+package com.ryanair.task.interconnected_flights;
+
+import com.ryanair.task.interconnected_flights.client.SchedulesClient;
+import com.ryanair.task.interconnected_flights.config.ResilienceProperties;
+import com.ryanair.task.interconnected_flights.config.UpstreamProperties;
+import com.ryanair.task.interconnected_flights.model.ScheduleKey;
+import com.ryanair.task.interconnected_flights.model.Timetable;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the schedules client against a local stub upstream to check the cache, retry and circuit-breaker behaviour
+ * a search relies on when the upstream is slow to change, flaky or down.
+ */
+public class SchedulesClientTest {
+
+    private static final String MORNING = "{\"month\":3,\"days\":[{\"day\":1,\"flights\":[{\"number\":\"99\",\"departureTime\":\"06:00\",\"arrivalTime\":\"10:00\"}]}]}";
+    private static final String EVENING = "{\"month\":3,\"days\":[{\"day\":1,\"flights\":[{\"number\":\"99\",\"departureTime\":\"18:00\",\"arrivalTime\":\"22:00\"}]}]}";
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicReference<String> body = new AtomicReference<>(MORNING);
+    // statuses answered by the next calls, before the stub goes back to answering the body
+    private final Queue<Integer> failures = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger status = new AtomicInteger(200);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private DisposableServer stub;
+
+    @BeforeEach
+    void setUp() {
+        stub = HttpServer.create()
+                .port(0)
+                .route(routes -> routes.get("/{departure}/{arrival}/years/{year}/months/{month}", (request, response) -> {
+                    calls.incrementAndGet();
+                    Integer failure = failures.poll();
+                    int answer = failure != null ? failure : status.get();
+                    if (answer != 200) {
+                        return response.status(answer).send();
+                    }
+                    return response.header("Content-Type", "application/json").sendString(Mono.just(body.get()));
+                }))
+                .bindNow();
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.disposeNow();
+    }
+
+    @Test
+    void testStaleScheduleIsServedWhileItIsRevalidated() {
+        SchedulesClient client = client(0, 50, Duration.ofMillis(200));
+        List<ScheduleKey> changes = new CopyOnWriteArrayList<>();
+        client.onChange(changes::add);
+        Timetable morning = client.getSchedule("DUB", "WRO", 2018, 3).block();
+        assertEquals(1, calls.get());
+
+        // a failed refresh keeps serving the cached month
+        status.set(500);
+        await().pollDelay(Duration.ofMillis(250)).atMost(Duration.ofSeconds(5)).until(() -> {
+            assertSame(morning, client.getSchedule("DUB", "WRO", 2018, 3).block());
+            return calls.get() >= 2;
+        });
+        assertTrue(changes.isEmpty());
+
+        // a successful one swaps it and reports the change, the stale month still being served until then
+        status.set(200);
+        body.set(EVENING);
+        await().atMost(Duration.ofSeconds(5)).until(() -> client.getSchedule("DUB", "WRO", 2018, 3).block() != morning);
+        assertEquals(List.of(new ScheduleKey("DUB", "WRO", 2018, 3)), changes);
+        assertEquals(Timetable.toEpochMinute(LocalDateTime.parse("2018-03-01T18:00")),
+                client.getSchedule("DUB", "WRO", 2018, 3).block().departure(0));
+    }
+
+    @Test
+    void testTransientFailuresAreRetriedWithBackoff() {
+        SchedulesClient client = client(2, 50, Duration.ofMinutes(5));
+        failures.add(503);
+        failures.add(500);
+
+        Timetable timetable = client.getSchedule("DUB", "WRO", 2018, 3).block(Duration.ofSeconds(5));
+
+        assertEquals(1, timetable.size());
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    void testLastFailureIsReportedOnceRetriesAreExhausted() {
+        SchedulesClient client = client(2, 50, Duration.ofMinutes(5));
+        status.set(500);
+
+        Mono<Timetable> schedule = client.getSchedule("DUB", "WRO", 2018, 3);
+
+        assertThrows(WebClientResponseException.InternalServerError.class, () -> schedule.block(Duration.ofSeconds(5)));
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    void testBreakerOpensAfterSustainedFailures() {
+        SchedulesClient client = client(0, 2, Duration.ofMinutes(5));
+        status.set(500);
+
+        assertThrows(WebClientResponseException.class, () -> client.getSchedule("DUB", "WRO", 2018, 3).block(Duration.ofSeconds(5)));
+        assertThrows(WebClientResponseException.class, () -> client.getSchedule("DUB", "STN", 2018, 3).block(Duration.ofSeconds(5)));
+        assertEquals(CircuitBreaker.State.OPEN, client.resilience().state());
+
+        assertThrows(CallNotPermittedException.class, () -> client.getSchedule("DUB", "BGY", 2018, 3).block(Duration.ofSeconds(5)));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void testMonthNotOperatedIsAnEmptyTimetable() {
+        SchedulesClient client = client(2, 50, Duration.ofMinutes(5));
+        status.set(404);
+
+        Timetable timetable = client.getSchedule("DUB", "WRO", 2018, 3).block(Duration.ofSeconds(5));
+
+        assertEquals(0, timetable.size());
+        assertEquals(1, calls.get());
+        assertEquals(CircuitBreaker.State.CLOSED, client.resilience().state());
+    }
+
+    @Test
+    void testCacheLookupsAndLoadsAreMetered() {
+        SchedulesClient client = client(0, 50, Duration.ofMinutes(5));
+
+        client.getSchedule("DUB", "WRO", 2018, 3).block(Duration.ofSeconds(5));
+        client.getSchedule("DUB", "WRO", 2018, 3).block(Duration.ofSeconds(5));
+        client.getSchedule("DUB", "STN", 2018, 3).block(Duration.ofSeconds(5));
+
+        assertEquals(1, meterRegistry.get("schedules.cache.requests").tag("result", "hit").functionCounter().count());
+        assertEquals(2, meterRegistry.get("schedules.cache.requests").tag("result", "miss").functionCounter().count());
+        assertEquals(1.0 / 3, meterRegistry.get("schedules.cache.hit.ratio").gauge().value(), 1e-9);
+        assertEquals(2, meterRegistry.get("schedules.cache.size").gauge().value());
+        await().atMost(Duration.ofSeconds(5)).until(() ->
+                meterRegistry.get("schedules.cache.loads").tag("result", "success").functionCounter().count() == 2);
+        assertEquals(0, meterRegistry.get("schedules.cache.loads").tag("result", "failure").functionCounter().count());
+    }
+
+    private SchedulesClient client(int maxRetries, int breakerWindow, Duration refreshAfter) {
+        UpstreamProperties.Client upstream = new UpstreamProperties.Client(
+                "http://localhost:" + stub.port(), 8, 100, Duration.ofSeconds(5), Duration.ofSeconds(30), Duration.ofSeconds(2), Duration.ofSeconds(5),
+                Duration.ofSeconds(10), DataSize.ofMegabytes(2), false, false, 8, 1000, 10_000, 1000, Duration.ofSeconds(5));
+        ResilienceProperties.Upstream resilience = new ResilienceProperties.Upstream(maxRetries, Duration.ofMillis(10), Duration.ofMillis(50),
+                50, Duration.ofSeconds(3), 80, breakerWindow, breakerWindow, Duration.ofSeconds(30), 1);
+        return new SchedulesClient(WebClient.builder(), new UpstreamProperties(upstream, upstream), new ResilienceProperties(resilience, resilience),
+                meterRegistry, ObservationRegistry.NOOP, 100, refreshAfter, Duration.ofHours(2));
+    }
+}
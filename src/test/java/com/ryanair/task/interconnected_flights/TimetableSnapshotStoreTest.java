@@ -0,0 +1,78 @@
+package com.ryanair.task.interconnected_flights;
+
+import com.ryanair.task.interconnected_flights.dto.DayDTO;
+import com.ryanair.task.interconnected_flights.dto.FlightDTO;
+import com.ryanair.task.interconnected_flights.dto.MonthScheduleDTO;
+import com.ryanair.task.interconnected_flights.model.*;
+import com.ryanair.task.interconnected_flights.service.TimetableSnapshotStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimetableSnapshotStoreTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void testSnapshotRoundTripsRoutesAndSchedules() throws IOException {
+        RouteGraph routes = RouteGraph.builder()
+                .addRoute("DUB", "STN")
+                .addRoute("STN", "WRO")
+                .build();
+        Timetable timetable = Timetable.of(YearMonth.of(2018, 3), List.of(new MonthScheduleDTO(3, List.of(
+                new DayDTO(1, List.of(new FlightDTO("101", "06:25", "07:35"), new FlightDTO("103", "23:10", "00:20")))))));
+        ScheduleKey key = new ScheduleKey("DUB", "STN", 2018, 3);
+        Instant fetchedAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+        Path path = directory.resolve("timetable.snapshot");
+        TimetableSnapshotStore.write(path, new TimetableSnapshot(Instant.now(), routes, Map.of(key, new CachedTimetable(timetable, fetchedAt))));
+        TimetableSnapshot restored = TimetableSnapshotStore.read(path);
+
+        assertEquals(2, restored.routes().routeCount());
+        assertTrue(restored.routes().hasRoute("STN", "WRO"));
+        assertEquals(routes.loadedAt().truncatedTo(ChronoUnit.MILLIS), restored.routes().loadedAt());
+
+        CachedTimetable entry = restored.schedules().get(key);
+        assertNotNull(entry);
+        assertEquals(fetchedAt, entry.fetchedAt());
+        assertEquals(2, entry.timetable().size());
+        assertEquals("103", entry.timetable().flightNumber(1));
+        assertEquals(LocalDateTime.parse("2018-03-01T23:10"), Timetable.toDateTime(entry.timetable().departure(1)));
+        assertEquals(LocalDateTime.parse("2018-03-02T00:20"), Timetable.toDateTime(entry.timetable().arrival(1)));
+    }
+
+    @Test
+    void testMissingFlightNumberStaysMissing() throws IOException {
+        Timetable timetable = Timetable.of(YearMonth.of(2018, 3), List.of(new MonthScheduleDTO(3, List.of(
+                new DayDTO(1, List.of(new FlightDTO(null, "06:25", "07:35"), new FlightDTO("", "09:50", "13:20")))))));
+        ScheduleKey key = new ScheduleKey("DUB", "STN", 2018, 3);
+
+        Path path = directory.resolve("timetable.snapshot");
+        TimetableSnapshotStore.write(path, new TimetableSnapshot(Instant.now(), null, Map.of(key, new CachedTimetable(timetable, Instant.now()))));
+        Timetable restored = TimetableSnapshotStore.read(path).schedules().get(key).timetable();
+
+        assertNull(restored.flightNumber(0));
+        assertEquals("", restored.flightNumber(1));
+        assertTrue(restored.sameFlights(timetable));
+    }
+
+    @Test
+    void testFilesOfAnotherFormatAreRejected() throws IOException {
+        Path path = directory.resolve("timetable.snapshot");
+        Files.writeString(path, "not a snapshot");
+
+        assertThrows(IOException.class, () -> TimetableSnapshotStore.read(path));
+    }
+}